@@ -0,0 +1,161 @@
+package org.monarch.golr;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+import io.scigraph.frames.CommonProperties;
+import io.scigraph.frames.NodeProperties;
+import io.scigraph.internal.EvidenceAspect;
+import io.scigraph.internal.GraphAspect;
+import io.scigraph.neo4j.Neo4jConfiguration;
+import io.scigraph.neo4j.Neo4jModule;
+import io.scigraph.owlapi.OwlRelationships;
+
+/***
+ * A generated, ontology shaped graph for the benchmarks.
+ *
+ * <p>Classes form a random subClassOf tree with a tenth of them having an equivalent class.
+ * Genes have phenotype edges to classes, each backed by an association node with evidence,
+ * mirroring the structure of the Monarch associations that the loader processes.
+ */
+class BenchmarkGraph implements AutoCloseable {
+
+  static final String PREFIX = "http://x.org/";
+  static final String EQUIVALENT_PREFIX = "http://y.org/";
+  static final String HAS_PHENOTYPE = "http://purl.obolibrary.org/obo/RO_0002200";
+  static final Label GENE = Label.label("gene");
+
+  static final String PHENOTYPE_QUERY = "MATCH path=(subject:gene)-[:`" + HAS_PHENOTYPE
+      + "`]->(object) RETURN path, subject, object, "
+      + "'gene' AS subject_category, 'phenotype' AS object_category";
+
+  private static final int ASSOCIATIONS_PER_GENE = 5;
+  private static final int EVIDENCE_TYPES = 10;
+  private static final int BATCH_SIZE = 10_000;
+
+  private final File location;
+  final Injector injector;
+  final GraphDatabaseService graphDb;
+  final List<Node> classes = new ArrayList<>();
+  final List<Node> genes = new ArrayList<>();
+
+  private BenchmarkGraph(File location, Injector injector) {
+    this.location = location;
+    this.injector = injector;
+    this.graphDb = injector.getInstance(GraphDatabaseService.class);
+  }
+
+  static BenchmarkGraph create(int size) throws IOException {
+    File location = Files.createTempDirectory("golr-benchmark").toFile();
+    Map<String, String> curies = new HashMap<>();
+    curies.put("X", PREFIX);
+    curies.put("Y", EQUIVALENT_PREFIX);
+    Neo4jConfiguration config = new ObjectMapper().convertValue(
+        ImmutableMap.of("location", location.getAbsolutePath(), "curies", curies),
+        Neo4jConfiguration.class);
+    Injector injector = Guice.createInjector(new GolrLoaderModule(), new Neo4jModule(config),
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            bind(GraphAspect.class).to(EvidenceAspect.class);
+          }
+        });
+    BenchmarkGraph graph = new BenchmarkGraph(location, injector);
+    graph.populate(size, new Random(42));
+    return graph;
+  }
+
+  private Node createNode(String iri, String label) {
+    Node node = graphDb.createNode();
+    node.setProperty(NodeProperties.IRI, iri);
+    node.setProperty(NodeProperties.LABEL, label);
+    return node;
+  }
+
+  private void populate(int size, Random random) {
+    RelationshipType hasPhenotype = RelationshipType.withName(HAS_PHENOTYPE);
+    RelationshipType hasSubject =
+        RelationshipType.withName("http://purl.org/oban/association_has_subject");
+    RelationshipType hasObject =
+        RelationshipType.withName("http://purl.org/oban/association_has_object");
+    RelationshipType hasEvidence =
+        RelationshipType.withName("http://purl.obolibrary.org/obo/RO_0002558");
+
+    Transaction tx = graphDb.beginTx();
+    try {
+      List<Node> evidenceTypes = new ArrayList<>();
+      for (int i = 0; i < EVIDENCE_TYPES; i++) {
+        evidenceTypes.add(createNode(PREFIX + "evidence_" + i, "evidence " + i));
+      }
+      for (int i = 0; i < size; i++) {
+        Node node = createNode(PREFIX + "class_" + i, "class " + i);
+        if (i > 0) {
+          node.createRelationshipTo(classes.get(random.nextInt(i)),
+              OwlRelationships.RDFS_SUBCLASS_OF);
+        }
+        if (i % 10 == 0) {
+          node.createRelationshipTo(createNode(EQUIVALENT_PREFIX + i, "class " + i),
+              OwlRelationships.OWL_EQUIVALENT_CLASS);
+        }
+        classes.add(node);
+        if (i % BATCH_SIZE == 0) {
+          tx = commit(tx);
+        }
+      }
+      for (int i = 0; i < size / 10; i++) {
+        Node gene = createNode(PREFIX + "gene_" + i, "gene " + i);
+        gene.addLabel(GENE);
+        for (int j = 0; j < ASSOCIATIONS_PER_GENE; j++) {
+          Node phenotype = classes.get(random.nextInt(size));
+          Relationship edge = gene.createRelationshipTo(phenotype, hasPhenotype);
+          edge.setProperty(CommonProperties.IRI, HAS_PHENOTYPE);
+          Node association = createNode(PREFIX + "assn_" + i + "_" + j, "association");
+          association.createRelationshipTo(gene, hasSubject);
+          association.createRelationshipTo(phenotype, hasObject);
+          association.createRelationshipTo(evidenceTypes.get(random.nextInt(EVIDENCE_TYPES)),
+              hasEvidence);
+        }
+        genes.add(gene);
+        if (i % BATCH_SIZE == 0) {
+          tx = commit(tx);
+        }
+      }
+      tx.success();
+    } finally {
+      tx.close();
+    }
+  }
+
+  private Transaction commit(Transaction tx) {
+    tx.success();
+    tx.close();
+    return graphDb.beginTx();
+  }
+
+  @Override
+  public void close() throws IOException {
+    graphDb.shutdown();
+    FileUtils.deleteDirectory(location);
+  }
+
+}
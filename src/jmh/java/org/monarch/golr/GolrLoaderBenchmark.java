@@ -0,0 +1,187 @@
+package org.monarch.golr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.monarch.golr.beans.Closure;
+import org.monarch.golr.beans.GolrCypherQuery;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.prefixcommons.CurieUtil;
+
+import com.tinkerpop.blueprints.Graph;
+
+import io.scigraph.internal.CypherUtil;
+
+/***
+ * Throughput of the per document hot path at several graph sizes.
+ *
+ * <p>Run with {@code mvn -Pbenchmark test-compile exec:exec}, which adds the GC profiler so
+ * allocation rates are reported next to throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class GolrLoaderBenchmark {
+
+  private static final int ROWS = 1000;
+
+  @Param({"1000", "10000", "100000"})
+  int size;
+
+  BenchmarkGraph graph;
+  CurieUtil curieUtil;
+  ClosureUtil closureUtil;
+  GolrLoader loader;
+  EvidenceProcessor processor;
+  SolrDocUtil docUtil;
+  GolrCypherQuery query;
+
+  Node[] classes;
+  List<Map<String, Object>> rows = new ArrayList<>();
+  List<EvidenceGraphInfo> evidence = new ArrayList<>();
+  List<Graph> evidenceGraphs = new ArrayList<>();
+  List<List<Closure>> closures = new ArrayList<>();
+  int next = 0;
+
+  Transaction tx;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    graph = BenchmarkGraph.create(size);
+    closureUtil = graph.injector.getInstance(ClosureUtil.class);
+    loader = graph.injector.getInstance(GolrLoader.class);
+    processor = graph.injector.getInstance(EvidenceProcessor.class);
+    docUtil = new SolrDocUtil(closureUtil);
+    query = new GolrCypherQuery(BenchmarkGraph.PHENOTYPE_QUERY);
+    classes = graph.classes.toArray(new Node[0]);
+    curieUtil = graph.injector.getInstance(CurieUtil.class);
+
+    try (Transaction setupTx = graph.graphDb.beginTx()) {
+      Result result = graph.injector.getInstance(CypherUtil.class).execute(query.getQuery());
+      while (result.hasNext() && rows.size() < ROWS) {
+        Map<String, Object> row = result.next();
+        rows.add(row);
+        EvidenceGraphInfo info = new EvidenceGraphInfo();
+        info.addRow(row);
+        evidence.add(info);
+        evidenceGraphs.add(info.toGraph(graph.graphDb, curieUtil));
+        List<Closure> rowClosures = new ArrayList<>();
+        for (long id : info.getNodeIds()) {
+          rowClosures.add(closureUtil.getClosure(graph.graphDb.getNodeById(id),
+              SolrDocUtil.DEFAULT_CLOSURE_TYPES));
+        }
+        closures.add(rowClosures);
+      }
+      // Warm the closure cache
+      for (Node node : classes) {
+        closureUtil.getClosure(node, SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+      }
+      setupTx.success();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    graph.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void beginTx() {
+    tx = graph.graphDb.beginTx();
+  }
+
+  @TearDown(Level.Iteration)
+  public void endTx() {
+    tx.success();
+    tx.close();
+  }
+
+  private int nextIndex(int bound) {
+    next = (next + 1) % bound;
+    return next;
+  }
+
+  /***
+   * A closure util with nothing cached, not even the closures of ancestors, which computing a
+   * closure would otherwise leave behind for the next invocation.
+   */
+  @State(Scope.Thread)
+  public static class EmptyClosureUtil {
+
+    ClosureUtil closureUtil;
+
+    @Setup(Level.Invocation)
+    public void create(GolrLoaderBenchmark benchmark) {
+      closureUtil = new ClosureUtil(benchmark.graph.graphDb, benchmark.curieUtil);
+    }
+
+  }
+
+  @Benchmark
+  public Closure closureCold(EmptyClosureUtil empty) {
+    return empty.closureUtil.computeClosure(classes[nextIndex(classes.length)],
+        SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+  }
+
+  @Benchmark
+  public Closure closureWarm() {
+    return closureUtil.getClosure(classes[nextIndex(classes.length)],
+        SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+  }
+
+  @Benchmark
+  public GolrDocument serializerRow() throws Exception {
+    return loader.serializerRow(rows.get(nextIndex(rows.size())), new EvidenceGraphInfo(), query);
+  }
+
+  @Benchmark
+  public GolrDocument addEvidenceToDoc() throws Exception {
+    GolrDocument doc = new GolrDocument();
+    doc.addField("subject_category", "gene");
+    doc.addField("object_category", "phenotype");
+    return loader.addEvidenceToDoc(doc, evidence.get(nextIndex(evidence.size())),
+        Optional.empty());
+  }
+
+  @Benchmark
+  public GolrDocument writeQuint() throws Exception {
+    GolrDocument doc = new GolrDocument();
+    docUtil.writeQuint("evidence_object", closures.get(nextIndex(closures.size())), doc);
+    return doc;
+  }
+
+  @Benchmark
+  public SolrInputDocument toSolrInputDocument() throws Exception {
+    return loader.serializerRow(rows.get(nextIndex(rows.size())), new EvidenceGraphInfo(), query)
+        .toSolrInputDocument();
+  }
+
+  @Benchmark
+  public String getEvidenceGraph() {
+    return processor.getEvidenceGraph(evidenceGraphs.get(nextIndex(evidenceGraphs.size())),
+        Optional.empty());
+  }
+
+}
@@ -38,12 +38,21 @@ import io.scigraph.neo4j.Neo4jModule;
  */
 public class BenchmarkQueries {
 
-  static final String queriesDirectory =
-      "/home/jnguyenxuan/workspace/monarch-cypher-queries/src/main/cypher/feature-location/";
-  static final String configurationPath = "src/test/resources/benchmarkconf.yaml";
+  static final String defaultConfigurationPath = "src/test/resources/benchmarkconf.yaml";
 
+  /***
+   * For micro benchmarks of the document building see GolrLoaderBenchmark in src/jmh.
+   *
+   * @param args the query directory and an optional graph configuration
+   */
   public static void main(String[] args)
       throws JsonParseException, JsonMappingException, IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: BenchmarkQueries <query directory> [graph configuration]");
+      System.exit(-1);
+    }
+    String queriesDirectory = args[0];
+    String configurationPath = args.length > 1 ? args[1] : defaultConfigurationPath;
 
     ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
     Neo4jConfiguration neo4jConfig =
@@ -0,0 +1,270 @@
+package org.monarch.golr;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.graphdb.traversal.Uniqueness;
+import org.prefixcommons.CurieUtil;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import io.scigraph.frames.NodeProperties;
+import io.scigraph.neo4j.DirectedRelationshipType;
+import io.scigraph.neo4j.Graph;
+import io.scigraph.neo4j.GraphUtil;
+import io.scigraph.owlapi.OwlRelationships;
+
+/***
+ * The nodes that changed since the GOLR core was last loaded, used to reload only the documents
+ * they affect.
+ *
+ * <p>A subject/object document is affected when any node of its rows changed, or descends from
+ * a changed node through the default closure relationships since its closure fields change
+ * with it. The ends of the relationships of its rows and the nodes of their types count as nodes
+ * of its rows. Nodes that copy the taxon, gene or chromosome fields of a changed node are
+ * affected too, they are found by following the relationships of those lookups in reverse.
+ * Documents are deleted by subject and object before the affected ones are emitted again under
+ * their deterministic ids, so every query has to take part in an incremental run. Documents that
+ * a query no longer produces at all are deleted by id, see {@link DocumentIdLog}.
+ */
+class ChangeSet {
+
+  private static final Logger logger = Logger.getLogger(ChangeSet.class.getName());
+
+  // Two clauses per term keeps a delete under Solr's default maxBooleanClauses of 1024
+  static final int DELETE_BATCH_SIZE = 256;
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final Set<String> iris;
+  private final NodeIdSet affectedNodes;
+  private final Set<String> affectedTypes;
+
+  private ChangeSet(Set<String> iris, NodeIdSet affectedNodes, Set<String> affectedTypes) {
+    this.iris = iris;
+    this.affectedNodes = affectedNodes;
+    this.affectedTypes = affectedTypes;
+  }
+
+  static ChangeSet create(GraphDatabaseService graphDb, Graph graph, Collection<String> iris) {
+    return create(graphDb, graph, iris, Collections.emptyList());
+  }
+
+  /***
+   * Resolves the changed IRIs and marks their descendants. IRIs no longer in the graph are only
+   * used for deletes.
+   *
+   * @param fieldTypes the relationships followed from a node to the nodes whose fields it copies,
+   *        see {@link GolrLoader#getFeatureFieldTypes()}
+   */
+  static ChangeSet create(GraphDatabaseService graphDb, Graph graph, Collection<String> iris,
+      Collection<DirectedRelationshipType> fieldTypes) {
+    NodeIdSet affected = new NodeIdSet();
+    Set<String> affectedTypes = new HashSet<>();
+    try (Transaction tx = graphDb.beginTx()) {
+      List<Node> changed = new ArrayList<>();
+      for (String iri : iris) {
+        Optional<Long> id = graph.getNode(iri);
+        if (id.isPresent()) {
+          changed.add(graphDb.getNodeById(id.get()));
+        }
+      }
+      TraversalDescription descendants = graphDb.traversalDescription().breadthFirst()
+          .uniqueness(Uniqueness.NODE_GLOBAL)
+          .relationships(OwlRelationships.RDFS_SUBCLASS_OF, Direction.INCOMING)
+          .relationships(OwlRelationships.RDF_TYPE, Direction.INCOMING)
+          .relationships(OwlRelationships.OWL_EQUIVALENT_CLASS, Direction.BOTH)
+          .relationships(OwlRelationships.OWL_SAME_AS, Direction.BOTH);
+      for (DirectedRelationshipType type : fieldTypes) {
+        descendants = descendants.relationships(type.getType(), type.getDirection().reverse());
+      }
+      // One traversal from every changed node visits shared descendants once
+      for (Node node : descendants.traverse(changed).nodes()) {
+        affected.add(node.getId());
+      }
+      // A relationship type is named after the IRI of its node
+      for (RelationshipType type : graphDb.getAllRelationshipTypesInUse()) {
+        Optional<Long> id = graph.getNode(type.name());
+        if (id.isPresent() && affected.contains(id.get())) {
+          affectedTypes.add(type.name());
+        }
+      }
+      tx.success();
+    }
+    logger.info(iris.size() + " changed IRIs affect " + affected.size() + " nodes and "
+        + affectedTypes.size() + " relationship types");
+    return new ChangeSet(ImmutableSet.copyOf(iris), affected, affectedTypes);
+  }
+
+  /***
+   * Reads one IRI per line, skipping blank lines and # comments.
+   */
+  static Set<String> readIris(File file) throws IOException {
+    Set<String> iris = new HashSet<>();
+    for (String line : Files.readAllLines(file.toPath(), UTF_8)) {
+      String iri = line.trim();
+      if (!iri.isEmpty() && !iri.startsWith("#")) {
+        iris.add(iri);
+      }
+    }
+    return iris;
+  }
+
+  /***
+   * Opens a previous store read only and diffs it against the current graph.
+   */
+  static Set<String> diff(File previousStore, GraphDatabaseService current) {
+    GraphDatabaseService previous = new GraphDatabaseFactory()
+        .newEmbeddedDatabaseBuilder(previousStore)
+        .setConfig(GraphDatabaseSettings.read_only, "true").newGraphDatabase();
+    try {
+      return diff(previous, current);
+    } finally {
+      previous.shutdown();
+    }
+  }
+
+  /***
+   * @return the IRIs of the nodes added, removed or changed between two snapshots. A node changes
+   *         when its labels, properties or relationships do, so both ends of a changed
+   *         relationship are included.
+   */
+  static Set<String> diff(GraphDatabaseService previous, GraphDatabaseService current) {
+    Map<String, Long> fingerprints = new HashMap<>();
+    try (Transaction tx = previous.beginTx()) {
+      for (Node node : previous.getAllNodes()) {
+        Optional<String> iri = GraphUtil.getProperty(node, NodeProperties.IRI, String.class);
+        if (iri.isPresent()) {
+          fingerprints.put(iri.get(), fingerprint(node));
+        }
+      }
+      tx.success();
+    }
+    Set<String> changed = new HashSet<>();
+    try (Transaction tx = current.beginTx()) {
+      for (Node node : current.getAllNodes()) {
+        Optional<String> iri = GraphUtil.getProperty(node, NodeProperties.IRI, String.class);
+        if (iri.isPresent()) {
+          Long fingerprint = fingerprints.remove(iri.get());
+          if (null == fingerprint || fingerprint != fingerprint(node)) {
+            changed.add(iri.get());
+          }
+        }
+      }
+      tx.success();
+    }
+    // What is left was removed
+    changed.addAll(fingerprints.keySet());
+    logger.info("Found " + changed.size() + " changed nodes");
+    return changed;
+  }
+
+  /***
+   * An order independent hash of the labels, properties and relationships of a node. Neighbours
+   * are identified by IRI since node ids are not stable across loads.
+   */
+  static long fingerprint(Node node) {
+    List<HashCode> parts = new ArrayList<>();
+    for (Label label : node.getLabels()) {
+      parts.add(HASH.hashString(label.name(), UTF_8));
+    }
+    parts.add(HASH.hashLong(hashProperties(node)));
+    for (Relationship relationship : node.getRelationships()) {
+      Node other = relationship.getOtherNode(node);
+      parts.add(HASH.newHasher()
+          .putString(relationship.getType().name(), UTF_8)
+          .putBoolean(relationship.getStartNode().equals(node))
+          .putString(GraphUtil.getProperty(other, NodeProperties.IRI, String.class).orElse(""),
+              UTF_8)
+          .putLong(hashProperties(relationship)).hash());
+    }
+    return Hashing.combineUnordered(parts).asLong();
+  }
+
+  private static long hashProperties(PropertyContainer container) {
+    List<HashCode> properties = new ArrayList<>();
+    for (Map.Entry<String, Object> property : container.getAllProperties().entrySet()) {
+      Hasher hasher = HASH.newHasher().putString(property.getKey(), UTF_8);
+      // Neo4j arrays are primitive or String arrays
+      hasher.putString(Arrays.deepToString(new Object[] {property.getValue()}), UTF_8);
+      properties.add(hasher.hash());
+    }
+    return properties.isEmpty() ? 0 : Hashing.combineUnordered(properties).asLong();
+  }
+
+  Set<String> getIris() {
+    return iris;
+  }
+
+  boolean isAffected(long nodeId) {
+    return affectedNodes.contains(nodeId);
+  }
+
+  boolean affects(Collection<Long> nodeIds) {
+    for (long id : nodeIds) {
+      if (isAffected(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /***
+   * @return true if either end of the relationship or the node of its type is affected
+   */
+  boolean affects(Relationship relationship) {
+    return isAffected(relationship.getStartNode().getId())
+        || isAffected(relationship.getEndNode().getId())
+        || affectedTypes.contains(relationship.getType().name());
+  }
+
+  /***
+   * @return Solr queries matching every document whose subject or object changed
+   */
+  List<String> getDeleteQueries(CurieUtil curieUtil) {
+    List<String> queries = new ArrayList<>();
+    for (List<String> batch : Iterables.partition(iris, DELETE_BATCH_SIZE)) {
+      StringBuilder terms = new StringBuilder();
+      for (String iri : batch) {
+        if (terms.length() > 0) {
+          terms.append(" OR ");
+        }
+        terms.append(ClientUtils.escapeQueryChars(curieUtil.getCurie(iri).orElse(iri)));
+      }
+      queries.add("subject:(" + terms + ") OR object:(" + terms + ")");
+    }
+    return queries;
+  }
+
+}
@@ -0,0 +1,172 @@
+package org.monarch.golr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import org.monarch.golr.beans.Checkpoint;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/***
+ * Per task checkpoints persisted while loading, so that a failed load can resume where it
+ * stopped. Documents have deterministic ids, so anything sent again after a restart replaces
+ * its previous copy.
+ *
+ * <p>A checkpoint only moves past a batch once Solr has acknowledged it and every batch queued
+ * before it. Acknowledged documents are kept in Solr's update log and made visible by the
+ * final commit of the resumed run.
+ */
+class Checkpoints {
+
+  private static final Logger logger = Logger.getLogger(Checkpoints.class.getName());
+
+  private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+
+  private final Optional<File> file;
+  private final Map<String, Checkpoint> checkpoints;
+
+  private Checkpoints(Optional<File> file, Map<String, Checkpoint> checkpoints) {
+    this.file = file;
+    this.checkpoints = checkpoints;
+  }
+
+  /***
+   * Checkpoints that are neither read nor written.
+   */
+  static Checkpoints disabled() {
+    return new Checkpoints(Optional.empty(), new TreeMap<>());
+  }
+
+  static Checkpoints load(File file) throws IOException {
+    Map<String, Checkpoint> checkpoints = new TreeMap<>();
+    if (file.exists()) {
+      checkpoints = mapper.readValue(file, new TypeReference<TreeMap<String, Checkpoint>>() {});
+      logger.info("Resuming from " + checkpoints.size() + " checkpoints in " + file);
+    }
+    return new Checkpoints(Optional.of(file), checkpoints);
+  }
+
+  synchronized boolean isEmpty() {
+    return checkpoints.isEmpty();
+  }
+
+  synchronized Optional<Checkpoint> get(String task) {
+    return Optional.ofNullable(checkpoints.get(task));
+  }
+
+  synchronized void update(String task, Checkpoint checkpoint) {
+    checkpoints.put(task, checkpoint);
+    save();
+  }
+
+  private void save() {
+    if (!file.isPresent()) {
+      return;
+    }
+    try {
+      // Written aside and moved, so a crash never leaves a truncated file
+      File tmp = new File(file.get().getPath() + ".tmp");
+      mapper.writeValue(tmp, checkpoints);
+      Files.move(tmp.toPath(), file.get().toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to save checkpoints to " + file.get(), e);
+    }
+  }
+
+  /***
+   * Removes the file once the load has been committed.
+   */
+  synchronized void delete() throws IOException {
+    checkpoints.clear();
+    if (file.isPresent()) {
+      Files.deleteIfExists(file.get().toPath());
+    }
+  }
+
+  Tracker track(String task) {
+    return new Tracker(task);
+  }
+
+  /***
+   * Orders the acknowledgements of one task's batches, which the indexer's sender threads may
+   * complete out of order.
+   */
+  class Tracker {
+
+    private final String task;
+    private final Map<Long, Checkpoint> acknowledged = new HashMap<>();
+    private long queued = 0;
+    private long contiguous = 0;
+    private boolean finished = false;
+
+    private Tracker(String task) {
+      this.task = task;
+    }
+
+    /***
+     * @param lastPair the last subject/object pair of the batch, or null for an empty batch
+     * @return the callback to run once the batch has been acknowledged
+     */
+    synchronized Runnable queue(Pair<String, String> lastPair) {
+      return enqueue(
+          null == lastPair ? null : new Checkpoint(lastPair.getFirst(), lastPair.getSecond()));
+    }
+
+    /***
+     * @param lastRow the document id of the last feature row of the batch, or null for an empty
+     *        batch
+     * @return the callback to run once the batch has been acknowledged
+     */
+    synchronized Runnable queueRow(String lastRow) {
+      return enqueue(null == lastRow ? null : Checkpoint.atRow(lastRow));
+    }
+
+    private Runnable enqueue(Checkpoint position) {
+      long batch = queued++;
+      return () -> acknowledge(batch, position);
+    }
+
+    private synchronized void acknowledge(long batch, Checkpoint position) {
+      acknowledged.put(batch, position);
+      Checkpoint latest = null;
+      while (acknowledged.containsKey(contiguous)) {
+        Checkpoint checkpoint = acknowledged.remove(contiguous++);
+        if (null != checkpoint) {
+          latest = checkpoint;
+        }
+      }
+      if (!completeIfDone() && null != latest) {
+        update(task, latest);
+      }
+    }
+
+    /***
+     * Marks the task complete once every queued batch has been acknowledged.
+     */
+    synchronized void finish() {
+      finished = true;
+      completeIfDone();
+    }
+
+    private boolean completeIfDone() {
+      if (finished && contiguous == queued) {
+        update(task, Checkpoint.completed());
+        return true;
+      }
+      return false;
+    }
+
+  }
+
+}
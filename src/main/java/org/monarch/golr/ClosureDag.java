@@ -0,0 +1,254 @@
+package org.monarch.golr;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.monarch.golr.beans.Closure;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import com.google.common.cache.Cache;
+
+import io.scigraph.neo4j.DirectedRelationshipType;
+import io.scigraph.owlapi.OwlLabels;
+
+/***
+ * Computes closures bottom up: the closure of a node is the node itself and the union of the
+ * closures of its parents, each parent closure being looked up in, or added to, the cache of
+ * the relationship type set.
+ *
+ * <p>Cycles, typically equivalence cliques followed in both directions, are collapsed first:
+ * the strongly connected components of the nodes not yet cached are found with an iterative
+ * Tarjan search, which completes a component only after every component it reaches. All the
+ * members of a component share its ancestors. Anonymous nodes are neither included nor
+ * followed.
+ *
+ * <p>A closure holds the same nodes as a breadth first traversal from its start node, the start
+ * node first, followed by its parents' closures in relationship order.
+ */
+class ClosureDag {
+
+  private final TermDictionary terms;
+  private final Collection<DirectedRelationshipType> types;
+  private final Cache<Long, Closure> memo;
+  // Closures completed or used by this computation, still available if the cache evicts them
+  private final Map<Long, TermClosure> computed = new HashMap<>();
+  private long startId;
+
+  ClosureDag(TermDictionary terms, Collection<DirectedRelationshipType> types,
+      Cache<Long, Closure> memo) {
+    this.terms = terms;
+    this.types = types;
+    this.memo = memo;
+  }
+
+  private static final class Frame {
+    final Node node;
+    final Iterator<Node> parents;
+    final int index;
+    int lowLink;
+    boolean onStack = true;
+
+    Frame(Node node, Iterator<Node> parents, int index) {
+      this.node = node;
+      this.parents = parents;
+      this.index = index;
+      this.lowLink = index;
+    }
+  }
+
+  private List<Node> getParents(Node node) {
+    List<Node> parents = new ArrayList<>();
+    for (DirectedRelationshipType type : types) {
+      for (Relationship relationship : node.getRelationships(type.getDirection(),
+          type.getType())) {
+        Node parent = relationship.getOtherNode(node);
+        if (!parent.hasLabel(OwlLabels.OWL_ANONYMOUS)) {
+          parents.add(parent);
+        }
+      }
+    }
+    return parents;
+  }
+
+  /***
+   * Looks a closure up, pinning a cached one so that its eviction cannot drop it from the
+   * component it is a parent of.
+   */
+  private TermClosure getResolved(long nodeId) {
+    TermClosure closure = computed.get(nodeId);
+    if (null == closure) {
+      closure = (TermClosure) memo.getIfPresent(nodeId);
+      if (null != closure) {
+        computed.put(nodeId, closure);
+      }
+    }
+    return closure;
+  }
+
+  TermClosure getClosure(Node start) {
+    int term = terms.getTerm(start);
+    if (start.hasLabel(OwlLabels.OWL_ANONYMOUS)) {
+      return new TermClosure(terms, term, new int[0]);
+    }
+    startId = start.getId();
+    Map<Long, Frame> visited = new HashMap<>();
+    Deque<Frame> path = new ArrayDeque<>();
+    Deque<Frame> component = new ArrayDeque<>();
+    Frame root = new Frame(start, getParents(start).iterator(), 0);
+    visited.put(start.getId(), root);
+    path.push(root);
+    component.push(root);
+    while (!path.isEmpty()) {
+      Frame frame = path.peek();
+      if (frame.parents.hasNext()) {
+        Node parent = frame.parents.next();
+        Frame parentFrame = visited.get(parent.getId());
+        if (null == parentFrame) {
+          if (null != getResolved(parent.getId())) {
+            continue;
+          }
+          parentFrame = new Frame(parent, getParents(parent).iterator(), visited.size());
+          visited.put(parent.getId(), parentFrame);
+          path.push(parentFrame);
+          component.push(parentFrame);
+        } else if (parentFrame.onStack) {
+          frame.lowLink = Math.min(frame.lowLink, parentFrame.index);
+        }
+        continue;
+      }
+      path.pop();
+      if (!path.isEmpty()) {
+        path.peek().lowLink = Math.min(path.peek().lowLink, frame.lowLink);
+      }
+      if (frame.lowLink == frame.index) {
+        List<Node> members = new ArrayList<>();
+        Frame member;
+        do {
+          member = component.pop();
+          member.onStack = false;
+          members.add(member.node);
+        } while (member != frame);
+        resolve(members);
+      }
+    }
+    return computed.get(start.getId());
+  }
+
+  /***
+   * Unions a component with the closures of the parents outside of it, all of them resolved.
+   */
+  private void resolve(List<Node> members) {
+    Set<Long> memberIds = new HashSet<>();
+    for (Node member : members) {
+      memberIds.add(member.getId());
+    }
+    TermSet union = new TermSet();
+    // The component's root was popped last and is the node the search came from
+    for (int i = members.size() - 1; i >= 0; i--) {
+      union.add(terms.getTerm(members.get(i)));
+    }
+    for (int i = members.size() - 1; i >= 0; i--) {
+      for (Node parent : getParents(members.get(i))) {
+        if (memberIds.contains(parent.getId())) {
+          continue;
+        }
+        TermClosure closure = computed.get(parent.getId());
+        checkState(null != closure, "Closure of %s, a parent of %s, was not resolved",
+            parent.getId(), members.get(i).getId());
+        for (int term : closure.getTerms()) {
+          union.add(term);
+        }
+      }
+    }
+    int[] ancestors = union.toArray();
+    for (Node node : members) {
+      int term = terms.getTerm(node);
+      TermClosure closure = new TermClosure(terms, term, startingWith(term, ancestors));
+      computed.put(node.getId(), closure);
+      // The start node's closure is cached by the caller, which may be loading it
+      if (node.getId() != startId) {
+        memo.put(node.getId(), closure);
+      }
+    }
+  }
+
+  private static int[] startingWith(int term, int[] ancestors) {
+    if (ancestors[0] == term) {
+      return ancestors;
+    }
+    int[] closure = new int[ancestors.length];
+    closure[0] = term;
+    int size = 1;
+    for (int ancestor : ancestors) {
+      if (ancestor != term) {
+        closure[size++] = ancestor;
+      }
+    }
+    return closure;
+  }
+
+  /***
+   * An insertion ordered set of term ids.
+   */
+  private static final class TermSet {
+
+    private int[] terms = new int[16];
+    // term + 1, 0 for a free slot
+    private int[] table = new int[32];
+    private int size = 0;
+
+    private static int hash(int term) {
+      int hash = term * 0x9E3779B9;
+      return hash ^ (hash >>> 16);
+    }
+
+    void add(int term) {
+      int mask = table.length - 1;
+      int slot = hash(term) & mask;
+      while (0 != table[slot]) {
+        if (table[slot] == term + 1) {
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = term + 1;
+      if (size == terms.length) {
+        terms = Arrays.copyOf(terms, size * 2);
+      }
+      terms[size++] = term;
+      if (size * 2 > table.length) {
+        rehash();
+      }
+    }
+
+    private void rehash() {
+      table = new int[table.length * 2];
+      int mask = table.length - 1;
+      for (int i = 0; i < size; i++) {
+        int slot = hash(terms[i]) & mask;
+        while (0 != table[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = terms[i] + 1;
+      }
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(terms, size);
+    }
+
+  }
+
+}
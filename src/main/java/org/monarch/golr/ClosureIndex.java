@@ -0,0 +1,374 @@
+package org.monarch.golr;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongFunction;
+import java.util.logging.Logger;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.impl.store.StoreId;
+import org.neo4j.kernel.impl.transaction.log.TransactionIdStore;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+
+import io.scigraph.neo4j.DirectedRelationshipType;
+import io.scigraph.owlapi.OwlLabels;
+
+/***
+ * A precomputed, memory mapped index of the closures of every node taking part in the
+ * {@link SolrDocUtil#DEFAULT_CLOSURE_TYPES} or {@link SolrDocUtil#EQUIVALENT_EDGES} relationships.
+ *
+ * <p>The file holds one partition per relationship type set. A partition is a sorted array of
+ * node ids, an offset array and a pool holding the node ids of each closure, the start node
+ * first. Closures are read as {@link TermClosure}s of the loader's {@link TermDictionary}, so the
+ * curie and label of a node are resolved once whether its closures are indexed or computed. The
+ * header carries a fingerprint of the Neo4j store so that the index is only rebuilt when the
+ * graph changes, and several loader processes on one host can map the same file.
+ *
+ * <p>A single mapping is limited to 2GB, so the file is mapped in segments of
+ * {@code 2^SEGMENT_BITS} bytes and addressed by long offsets. Every value is a long aligned on 8
+ * bytes, hence never split across two segments.
+ */
+class ClosureIndex {
+
+  private static final Logger logger = Logger.getLogger(ClosureIndex.class.getName());
+
+  private static final int MAGIC = 0x474c5243;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+  static final int SEGMENT_BITS = 30;
+
+  static final List<Collection<DirectedRelationshipType>> INDEXED_TYPES =
+      ImmutableList.of(SolrDocUtil.DEFAULT_CLOSURE_TYPES, SolrDocUtil.EQUIVALENT_EDGES);
+
+  private static final Map<Collection<DirectedRelationshipType>, Integer> PARTITION_OF;
+
+  static {
+    ImmutableMap.Builder<Collection<DirectedRelationshipType>, Integer> partitionOf =
+        ImmutableMap.builder();
+    for (int i = 0; i < INDEXED_TYPES.size(); i++) {
+      partitionOf.put(INDEXED_TYPES.get(i), i);
+    }
+    PARTITION_OF = partitionOf.build();
+  }
+
+  private final ByteBuffer[] segments;
+  private final int segmentBits;
+  private final long segmentMask;
+  private final long fingerprint;
+  private final Partition[] partitions;
+
+  private static final class Partition {
+    final int nodeCount;
+    final long ids;
+    final long offsets;
+    final long pool;
+
+    Partition(int nodeCount, long ids, long offsets, long pool) {
+      this.nodeCount = nodeCount;
+      this.ids = ids;
+      this.offsets = offsets;
+      this.pool = pool;
+    }
+  }
+
+  private ClosureIndex(ByteBuffer[] segments, int segmentBits, long size) throws IOException {
+    this.segments = segments;
+    this.segmentBits = segmentBits;
+    this.segmentMask = (1L << segmentBits) - 1;
+    if (size < HEADER_SIZE || segments[0].getInt(0) != MAGIC
+        || segments[0].getInt(4) != VERSION) {
+      throw new IOException("Not a closure index (or an unsupported version)");
+    }
+    fingerprint = getLong(8);
+    int partitionCount = (int) getLong(16);
+    long position = HEADER_SIZE;
+    partitions = new Partition[partitionCount];
+    for (int i = 0; i < partitionCount; i++) {
+      int nodeCount = (int) getLong(position);
+      long ids = position + 8;
+      long offsets = ids + 8L * nodeCount;
+      long pool = offsets + 8L * (nodeCount + 1);
+      partitions[i] = new Partition(nodeCount, ids, offsets, pool);
+      position = pool + 8 * getLong(offsets + 8L * nodeCount);
+    }
+    if (position != size) {
+      throw new IOException("Truncated closure index");
+    }
+  }
+
+  /***
+   * Maps an existing index file.
+   */
+  static ClosureIndex open(Path path) throws IOException {
+    return open(path, SEGMENT_BITS);
+  }
+
+  static ClosureIndex open(Path path, int segmentBits) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      long segmentSize = 1L << segmentBits;
+      int segmentCount = (int) Math.max(1, (size + segmentSize - 1) >>> segmentBits);
+      ByteBuffer[] segments = new ByteBuffer[segmentCount];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i << segmentBits;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(segmentSize, size - start));
+      }
+      return new ClosureIndex(segments, segmentBits, size);
+    }
+  }
+
+  /***
+   * Maps the index at {@code path}, (re)building it first if it is missing or was built from a
+   * different version of the graph.
+   */
+  static ClosureIndex openOrBuild(Path path, GraphDatabaseService graphDb,
+      ClosureUtil closureUtil) throws IOException {
+    long currentFingerprint = fingerprint(graphDb);
+    if (Files.exists(path)) {
+      try {
+        ClosureIndex index = open(path);
+        if (index.fingerprint == currentFingerprint) {
+          logger.info("Reusing closure index " + path);
+          return index;
+        }
+        logger.info("Graph changed since " + path + " was built");
+      } catch (IOException e) {
+        logger.warning("Ignoring unreadable closure index " + path + ": " + e.getMessage());
+      }
+    }
+    build(path, graphDb, closureUtil, currentFingerprint);
+    return open(path);
+  }
+
+  long getFingerprint() {
+    return fingerprint;
+  }
+
+  private long getLong(long position) {
+    return segments[(int) (position >>> segmentBits)].getLong((int) (position & segmentMask));
+  }
+
+  /***
+   * @param nodeOf resolves the nodes that have no term yet
+   * @return the indexed closure, or empty if the types or the node are not indexed
+   */
+  Optional<TermClosure> getClosure(long nodeId, Collection<DirectedRelationshipType> types,
+      TermDictionary terms, LongFunction<Node> nodeOf) {
+    Integer partitionIndex = PARTITION_OF.get(types);
+    if (null == partitionIndex || partitionIndex >= partitions.length) {
+      return Optional.empty();
+    }
+    Partition partition = partitions[partitionIndex];
+    int low = 0;
+    int high = partition.nodeCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = getLong(partition.ids + 8L * mid);
+      if (midId < nodeId) {
+        low = mid + 1;
+      } else if (midId > nodeId) {
+        high = mid - 1;
+      } else {
+        return Optional.of(readClosure(partition, mid, terms, nodeOf));
+      }
+    }
+    return Optional.empty();
+  }
+
+  private TermClosure readClosure(Partition partition, int entry, TermDictionary terms,
+      LongFunction<Node> nodeOf) {
+    long start = getLong(partition.offsets + 8L * entry);
+    long end = getLong(partition.offsets + 8L * (entry + 1));
+    int[] members = new int[(int) (end - start)];
+    for (int i = 0; i < members.length; i++) {
+      members[i] = terms.getTerm(getLong(partition.pool + 8 * (start + i)), nodeOf);
+    }
+    return new TermClosure(terms, members[0], members);
+  }
+
+  /***
+   * Identifies a particular version of a Neo4j store: its id plus the last committed transaction.
+   */
+  static long fingerprint(GraphDatabaseService graphDb) {
+    GraphDatabaseAPI api = (GraphDatabaseAPI) graphDb;
+    StoreId storeId = api.storeId();
+    long lastTransaction = api.getDependencyResolver().resolveDependency(TransactionIdStore.class)
+        .getLastCommittedTransactionId();
+    return Hashing.murmur3_128().newHasher()
+        .putLong(storeId.getCreationTime())
+        .putLong(storeId.getRandomId())
+        .putLong(lastTransaction)
+        .hash().asLong();
+  }
+
+  static void build(Path path, GraphDatabaseService graphDb, ClosureUtil closureUtil,
+      long fingerprint) throws IOException {
+    logger.info("Building closure index " + path);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Path directory = path.toAbsolutePath().getParent();
+    List<PartitionBuilder> builders = new ArrayList<>();
+    try {
+      try (Transaction tx = graphDb.beginTx()) {
+        for (Collection<DirectedRelationshipType> types : INDEXED_TYPES) {
+          PartitionBuilder builder = new PartitionBuilder(directory);
+          builders.add(builder);
+          RelationshipType[] relationshipTypes = new RelationshipType[types.size()];
+          int i = 0;
+          for (DirectedRelationshipType type : types) {
+            relationshipTypes[i++] = type.getType();
+          }
+          try (ResourceIterator<Node> nodes = graphDb.getAllNodes().iterator()) {
+            while (nodes.hasNext()) {
+              Node node = nodes.next();
+              if (node.hasLabel(OwlLabels.OWL_ANONYMOUS)
+                  || !node.hasRelationship(relationshipTypes)) {
+                continue;
+              }
+              builder.add(node.getId(), closureUtil.computeClosure(node, types),
+                  closureUtil.getTerms());
+            }
+          }
+          builder.finishPool();
+        }
+        tx.success();
+      }
+
+      Path tmp = Files.createTempFile(directory, "closures", ".tmp");
+      try (OutputStream stream = Files.newOutputStream(tmp);
+          DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint);
+        out.writeLong(builders.size());
+        for (PartitionBuilder builder : builders) {
+          builder.write(out);
+        }
+      }
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      for (PartitionBuilder builder : builders) {
+        builder.delete();
+      }
+    }
+    logger.info("Built closure index of " + Files.size(path) + " bytes in " + stopwatch.stop());
+  }
+
+  /***
+   * Keeps the node ids and offsets on the heap and spills the closures to a temporary file, so
+   * that the pool is only bounded by the disk.
+   */
+  private static final class PartitionBuilder {
+    private final Path poolPath;
+    private final DataOutputStream pool;
+    private long[] nodeIds = new long[1024];
+    private long[] offsets = new long[1025];
+    private int nodeCount = 0;
+    private long poolSize = 0;
+
+    PartitionBuilder(Path directory) throws IOException {
+      poolPath = Files.createTempFile(directory, "closures", ".pool");
+      pool = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(poolPath), 1 << 16));
+    }
+
+    void add(long nodeId, TermClosure closure, TermDictionary terms) throws IOException {
+      if (nodeCount + 1 >= offsets.length) {
+        nodeIds = Arrays.copyOf(nodeIds, nodeIds.length * 2);
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      nodeIds[nodeCount] = nodeId;
+      offsets[nodeCount] = poolSize;
+      nodeCount++;
+      for (int term : closure.getTerms()) {
+        pool.writeLong(terms.getNodeId(term));
+      }
+      poolSize += closure.getTerms().length;
+      offsets[nodeCount] = poolSize;
+    }
+
+    void finishPool() throws IOException {
+      pool.close();
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      // Nodes are usually iterated in id order already, otherwise they are sorted for binary
+      // search, carrying their closures along
+      int[] order = new int[nodeCount];
+      boolean sorted = true;
+      for (int i = 0; i < nodeCount; i++) {
+        order[i] = i;
+        sorted &= 0 == i || nodeIds[i - 1] < nodeIds[i];
+      }
+      if (!sorted) {
+        Integer[] boxed = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+          boxed[i] = i;
+        }
+        Arrays.sort(boxed, (a, b) -> Long.compare(nodeIds[a], nodeIds[b]));
+        for (int i = 0; i < nodeCount; i++) {
+          order[i] = boxed[i];
+        }
+      }
+      out.writeLong(nodeCount);
+      for (int i : order) {
+        out.writeLong(nodeIds[i]);
+      }
+      long position = 0;
+      for (int i : order) {
+        out.writeLong(position);
+        position += offsets[i + 1] - offsets[i];
+      }
+      out.writeLong(position);
+      try (FileChannel channel = FileChannel.open(poolPath, StandardOpenOption.READ)) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        for (int i : order) {
+          copy(channel, 8 * offsets[i], 8 * offsets[i + 1], buffer, out);
+        }
+      }
+    }
+
+    private static void copy(FileChannel channel, long start, long end, ByteBuffer buffer,
+        DataOutputStream out) throws IOException {
+      for (long position = start; position < end;) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), end - position));
+        int read = channel.read(buffer, position);
+        checkState(read > 0, "Closure pool ends at %s, expected %s", position, end);
+        out.write(buffer.array(), 0, read);
+        position += read;
+      }
+    }
+
+    void delete() throws IOException {
+      pool.close();
+      Files.deleteIfExists(poolPath);
+    }
+  }
+
+}
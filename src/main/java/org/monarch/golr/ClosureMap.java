@@ -0,0 +1,113 @@
+package org.monarch.golr;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.monarch.golr.beans.Closure;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/***
+ * Writes the curie to label map of a list of closures as a JSON object, reusing its buffers
+ * from one document to the next.
+ *
+ * <p>Entries are written in the order curies are first seen. Like a map put, a repeated curie
+ * keeps its position and takes the last label.
+ */
+class ClosureMap {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+  private final StringBuilder json = new StringBuilder();
+  private String[] curies = new String[INITIAL_CAPACITY];
+  private String[] labels = new String[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  // entry index + 1, 0 for a free slot
+  private int[] table = new int[INITIAL_CAPACITY * 2];
+  private int size = 0;
+
+  String toJson(List<Closure> closures) {
+    clear();
+    for (Closure closure : closures) {
+      List<String> closureCuries = closure.getCuries();
+      List<String> closureLabels = closure.getLabels();
+      for (int i = 0; i < closureCuries.size(); i++) {
+        put(closureCuries.get(i), closureLabels.get(i));
+      }
+    }
+    return write();
+  }
+
+  private void clear() {
+    Arrays.fill(curies, 0, size, null);
+    Arrays.fill(labels, 0, size, null);
+    Arrays.fill(table, 0);
+    size = 0;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private void put(String curie, String label) {
+    int hash = spread(curie.hashCode());
+    int mask = table.length - 1;
+    int slot = hash & mask;
+    while (0 != table[slot]) {
+      int entry = table[slot] - 1;
+      if (hashes[entry] == hash && curies[entry].equals(curie)) {
+        labels[entry] = label;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (size == curies.length) {
+      grow();
+      put(curie, label);
+      return;
+    }
+    curies[size] = curie;
+    labels[size] = label;
+    hashes[size] = hash;
+    table[slot] = ++size;
+  }
+
+  private void grow() {
+    int capacity = curies.length * 2;
+    curies = Arrays.copyOf(curies, capacity);
+    labels = Arrays.copyOf(labels, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    table = new int[capacity * 2];
+    int mask = table.length - 1;
+    for (int entry = 0; entry < size; entry++) {
+      int slot = hashes[entry] & mask;
+      while (0 != table[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = entry + 1;
+    }
+  }
+
+  private String write() {
+    json.setLength(0);
+    json.append('{');
+    for (int entry = 0; entry < size; entry++) {
+      if (entry > 0) {
+        json.append(',');
+      }
+      json.append('"');
+      encoder.quoteAsString(curies[entry], json);
+      json.append("\":");
+      if (null == labels[entry]) {
+        json.append("null");
+      } else {
+        json.append('"');
+        encoder.quoteAsString(labels[entry], json);
+        json.append('"');
+      }
+    }
+    return json.append('}').toString();
+  }
+
+}
@@ -7,54 +7,70 @@ import static com.google.common.collect.Lists.transform;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.monarch.golr.beans.Closure;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Path;
-import org.neo4j.graphdb.traversal.Evaluation;
-import org.neo4j.graphdb.traversal.Evaluator;
-import org.neo4j.graphdb.traversal.TraversalDescription;
-import org.neo4j.graphdb.traversal.Uniqueness;
 import org.prefixcommons.CurieUtil;
 
 import com.google.common.base.Function;
-import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
 
 import io.scigraph.frames.CommonProperties;
 import io.scigraph.frames.NodeProperties;
 import io.scigraph.neo4j.DirectedRelationshipType;
 import io.scigraph.neo4j.GraphUtil;
-import io.scigraph.owlapi.OwlLabels;
 
+/***
+ * Computes and caches node closures.
+ *
+ * <p>A single instance is meant to be shared by every loader and worker thread of a process so
+ * that closures of popular ontology terms are only computed once. The cache is partitioned by
+ * relationship type set, each partition holding up to {@code cacheSize} closures keyed by node id.
+ * Cached closures are arrays of {@link TermDictionary} ids, each node's curie and label being
+ * resolved once for all of them.
+ */
 class ClosureUtil {
 
+  private static final Logger logger = Logger.getLogger(ClosureUtil.class.getName());
+
+  static final String CLOSURE_CACHE_SIZE = "closureCacheSize";
+  static final long DEFAULT_CLOSURE_CACHE_SIZE = 1_000_000;
+
   private final GraphDatabaseService graphDb;
   private final CurieUtil curieUtil;
-  private final LoadingCache<ClosureKey, Closure> closureCache;
+  private final long cacheSize;
+  private final TermDictionary terms = new TermDictionary(this::getCurieOrIri, this::getLabelOrIri);
+  private final ConcurrentMap<Set<DirectedRelationshipType>, Cache<Long, Closure>> partitions =
+      new ConcurrentHashMap<>();
+  private volatile ClosureIndex index;
 
-  @Inject
   ClosureUtil(GraphDatabaseService graphDb, CurieUtil curieUtil) {
+    this(graphDb, curieUtil, DEFAULT_CLOSURE_CACHE_SIZE);
+  }
+
+  @Inject
+  ClosureUtil(GraphDatabaseService graphDb, CurieUtil curieUtil,
+      @Named(CLOSURE_CACHE_SIZE) long cacheSize) {
     this.graphDb = graphDb;
     this.curieUtil = curieUtil;
-    closureCache = CacheBuilder.newBuilder()
-        .maximumSize(1_000_000)
-        .build(new CacheLoader<ClosureKey, Closure>() {
-          @Override
-          public Closure load(ClosureKey source) throws Exception {
-            return getUncachedClosure(source.node, source.types);
-          }
-        });
+    this.cacheSize = cacheSize;
   }
 
   private String getCurieOrIri(Node node) {
@@ -75,9 +91,29 @@ class ClosureUtil {
     return getFirst(TinkerGraphUtil.getProperties(vertex, NodeProperties.LABEL, String.class), getCurieOrIri(vertex));
   }*/
 
-  Closure getClosure(Node start, Collection<DirectedRelationshipType> types) {
+  TermDictionary getTerms() {
+    return terms;
+  }
+
+  /***
+   * Serve closures of indexed relationship types from a precomputed {@link ClosureIndex} rather
+   * than from the heap cache.
+   */
+  void setIndex(ClosureIndex index) {
+    this.index = index;
+  }
+
+  Closure getClosure(final Node start, final Collection<DirectedRelationshipType> types) {
+    ClosureIndex closureIndex = index;
+    if (null != closureIndex) {
+      Optional<TermClosure> indexed =
+          closureIndex.getClosure(start.getId(), types, terms, graphDb::getNodeById);
+      if (indexed.isPresent()) {
+        return indexed.get();
+      }
+    }
     try {
-      return closureCache.get(new ClosureKey(start, types));
+      return getPartition(types).get(start.getId(), () -> computeClosure(start, types));
     } catch (ExecutionException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
@@ -85,32 +121,45 @@ class ClosureUtil {
     return null;
   }
 
-  private Closure getUncachedClosure(Node start, Collection<DirectedRelationshipType> types) {
-    Closure closure = new Closure();
-    TraversalDescription description = graphDb.traversalDescription().breadthFirst().uniqueness(Uniqueness.NODE_GLOBAL);
-    for (DirectedRelationshipType type: checkNotNull(types)) {
-      description = description.relationships(type.getType(), type.getDirection());
+  private Cache<Long, Closure> getPartition(Collection<DirectedRelationshipType> types) {
+    Cache<Long, Closure> partition = partitions.get(types);
+    if (null == partition) {
+      partition = partitions.computeIfAbsent(ImmutableSet.copyOf(types),
+          key -> CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build());
     }
-    description = description.evaluator(new Evaluator() {
-      @Override
-      public Evaluation evaluate(Path path) {
-        Node node = path.endNode();
-        if (node.hasLabel(OwlLabels.OWL_ANONYMOUS)) {
-          return Evaluation.EXCLUDE_AND_PRUNE;
-        } else {
-          return Evaluation.INCLUDE_AND_CONTINUE;
-        }
-      }
+    return partition;
+  }
 
-    });
-    closure.setCurie(getCurieOrIri(checkNotNull(start)));
-    closure.setLabel(getLabelOrIri(start));
-    for (Path path: description.traverse(start)) {
-      Node endNode = path.endNode();
-      closure.getCuries().add(getCurieOrIri(endNode));
-      closure.getLabels().add(getLabelOrIri(endNode));
+  /***
+   * Logs the cumulative hit, miss and eviction counts of the term dictionary and every cache
+   * partition.
+   */
+  void logStats(String context) {
+    terms.logStats(context);
+    for (Map.Entry<Set<DirectedRelationshipType>, Cache<Long, Closure>> partition : partitions
+        .entrySet()) {
+      CacheStats stats = partition.getValue().stats();
+      logger.info(String.format(
+          "%s - closure cache %s: size=%d, hits=%d, misses=%d, evictions=%d, hit rate=%.3f",
+          context, describe(partition.getKey()), partition.getValue().size(), stats.hitCount(),
+          stats.missCount(), stats.evictionCount(), stats.hitRate()));
     }
-    return closure;
+  }
+
+  private static String describe(Set<DirectedRelationshipType> types) {
+    List<String> names = new ArrayList<>();
+    for (DirectedRelationshipType type : types) {
+      names.add(type.getType().name() + "(" + type.getDirection() + ")");
+    }
+    return names.toString();
+  }
+
+  /***
+   * Computes a closure from the cached closures of its ancestors, caching any it had to compute.
+   */
+  TermClosure computeClosure(Node start, Collection<DirectedRelationshipType> types) {
+    return new ClosureDag(terms, checkNotNull(types), getPartition(types))
+        .getClosure(checkNotNull(start));
   }
 
   static List<String> collectLabels(List<Closure> closures) {
@@ -148,7 +197,7 @@ class ClosureUtil {
   }
 
   static Map<String, String> collectClosureMap(List<Closure> closures) {
-    Map<String, String> closureMap = new HashMap<>();
+    Map<String, String> closureMap = new LinkedHashMap<>();
     List<String> idClosure = collectIdClosure(closures);
     List<String> labelClosure = collectLabelClosure(closures);
     checkState(idClosure.size() == labelClosure.size());
@@ -160,32 +209,4 @@ class ClosureUtil {
     return closureMap;
   }
 
-  static final class ClosureKey {
-    final Node node;
-    final Collection<DirectedRelationshipType> types;
-
-    ClosureKey(Node node, Collection<DirectedRelationshipType> types) {
-      this.node = node;
-      this.types = types;
-    }
-
-    @Override
-    public int hashCode() {
-      return Objects.hashCode(node, types);
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-      if (this == obj) {
-        return true;
-      }
-      if (!(obj instanceof ClosureKey)) {
-        return false;
-      }
-      return Objects.equal(node, ((ClosureKey)obj).node) &&
-          Objects.equal(types, ((ClosureKey)obj).types);
-    }
-
-  }
-
 }
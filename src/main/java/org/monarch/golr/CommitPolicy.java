@@ -0,0 +1,98 @@
+package org.monarch.golr;
+
+import java.util.concurrent.TimeUnit;
+
+/***
+ * When {@link SolrIndexer} asks Solr to commit.
+ *
+ * <p>Every policy ends the load with one hard commit. Committing per batch flushes segments
+ * and reopens searchers hundreds of times during a full rebuild, so none of the policies do.
+ */
+class CommitPolicy {
+
+  enum Mode {
+    /*** No commits during the load */
+    FINAL,
+    /*** Documents are sent with commitWithin and Solr decides when to commit */
+    WITHIN,
+    /*** Periodic soft commits to make progress visible */
+    SOFT
+  }
+
+  static final int DEFAULT_COMMIT_WITHIN_MS = 60_000;
+  static final long DEFAULT_SOFT_COMMIT_DOCS = 1_000_000;
+  static final long DEFAULT_SOFT_COMMIT_SECONDS = 300;
+
+  private final Mode mode;
+  private final int commitWithinMs;
+  private final long softCommitDocs;
+  private final long softCommitMillis;
+  private final boolean optimize;
+
+  private CommitPolicy(Mode mode, int commitWithinMs, long softCommitDocs, long softCommitSeconds,
+      boolean optimize) {
+    this.mode = mode;
+    this.commitWithinMs = commitWithinMs;
+    this.softCommitDocs = softCommitDocs;
+    this.softCommitMillis = TimeUnit.SECONDS.toMillis(softCommitSeconds);
+    this.optimize = optimize;
+  }
+
+  static CommitPolicy finalCommit() {
+    return new CommitPolicy(Mode.FINAL, -1, 0, 0, false);
+  }
+
+  static CommitPolicy commitWithin(int commitWithinMs) {
+    return new CommitPolicy(Mode.WITHIN, commitWithinMs, 0, 0, false);
+  }
+
+  /***
+   * @param docs soft commit after this many documents, 0 to disable
+   * @param seconds soft commit after this many seconds, 0 to disable
+   */
+  static CommitPolicy softCommitEvery(long docs, long seconds) {
+    return new CommitPolicy(Mode.SOFT, -1, docs, seconds, false);
+  }
+
+  CommitPolicy withOptimize(boolean optimize) {
+    return new CommitPolicy(mode, commitWithinMs, softCommitDocs,
+        TimeUnit.MILLISECONDS.toSeconds(softCommitMillis), optimize);
+  }
+
+  Mode getMode() {
+    return mode;
+  }
+
+  /***
+   * @return the commitWithin to send with each batch, or -1
+   */
+  int getCommitWithinMs() {
+    return commitWithinMs;
+  }
+
+  boolean isOptimize() {
+    return optimize;
+  }
+
+  boolean isSoftCommitDue(long docsSinceCommit, long millisSinceCommit) {
+    if (Mode.SOFT != mode) {
+      return false;
+    }
+    return (softCommitDocs > 0 && docsSinceCommit >= softCommitDocs)
+        || (softCommitMillis > 0 && millisSinceCommit >= softCommitMillis);
+  }
+
+  @Override
+  public String toString() {
+    switch (mode) {
+      case WITHIN:
+        return "commitWithin " + commitWithinMs + " ms";
+      case SOFT:
+        return "soft commit every " + softCommitDocs + " documents or "
+            + TimeUnit.MILLISECONDS.toSeconds(softCommitMillis) + " s";
+      default:
+        return "final commit";
+    }
+  }
+
+}
@@ -0,0 +1,309 @@
+package org.monarch.golr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import com.google.common.hash.HashCode;
+
+/***
+ * The ids of the documents every query produces, kept from one load to the next so that the
+ * documents a query no longer produces can be deleted by id. Deleting by subject and object
+ * misses feature rows and pairs that are gone while their subject and object are still there.
+ *
+ * <p>A task records the id of every pair or row of its results, including the ones a resumed
+ * load skips or an incremental load leaves unaffected, so its ids are complete once it finishes.
+ * When every task of a query has finished, the ids recorded by the previous load and not produced
+ * again are deleted. The ids of this load replace the previous ones once the load is committed.
+ *
+ * <p>Ids are the murmur3 hashes of {@link DocumentIds}, stored as 16 bytes each.
+ */
+class DocumentIdLog {
+
+  private static final Logger logger = Logger.getLogger(DocumentIdLog.class.getName());
+
+  static final int DELETE_BATCH_SIZE = 1000;
+
+  private static final int ID_BYTES = 16;
+
+  private final Optional<Path> directory;
+  private final List<String> pendingQueries = new ArrayList<>();
+
+  private DocumentIdLog(Optional<Path> directory) {
+    this.directory = directory;
+  }
+
+  /***
+   * A log that records nothing and never deletes.
+   */
+  static DocumentIdLog disabled() {
+    return new DocumentIdLog(Optional.empty());
+  }
+
+  static DocumentIdLog open(File directory) throws IOException {
+    return new DocumentIdLog(Optional.of(Files.createDirectories(directory.toPath())));
+  }
+
+  private Path getPath(String name, String extension) {
+    try {
+      // Task names contain spaces and slashes
+      return directory.get().resolve(URLEncoder.encode(name, "UTF-8") + extension);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Path getTaskPath(String task) {
+    return getPath(task, ".task.ids");
+  }
+
+  private Path getQueryPath(String query) {
+    return getPath(query, ".query.ids");
+  }
+
+  private Path getNextQueryPath(String query) {
+    return getPath(query, ".query.ids.next");
+  }
+
+  /***
+   * @return a recorder replacing the ids of the task once it is committed
+   */
+  Recorder record(String task) throws IOException {
+    if (!directory.isPresent()) {
+      return new Recorder(null, null);
+    }
+    Path path = getTaskPath(task);
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    return new Recorder(path, tmp);
+  }
+
+  /***
+   * Deletes the documents of the query that the previous load produced and this one did not. Does
+   * nothing unless every task of the query recorded its ids.
+   *
+   * @param tasks the names of every task of the query
+   * @return the number of deleted ids
+   */
+  long deleteStale(String query, Collection<String> tasks, SolrIndexer indexer)
+      throws IOException {
+    if (!directory.isPresent()) {
+      return 0;
+    }
+    for (String task : tasks) {
+      if (!Files.exists(getTaskPath(task))) {
+        logger.warning("No ids recorded for " + task + ", stale documents of " + query
+            + " are kept");
+        return 0;
+      }
+    }
+    IdSet current = new IdSet();
+    Path next = getNextQueryPath(query);
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(next)))) {
+      for (String task : tasks) {
+        try (DataInputStream in = openIds(getTaskPath(task))) {
+          for (long[] id = new long[2]; read(in, id);) {
+            if (current.add(id[0], id[1])) {
+              out.writeLong(id[0]);
+              out.writeLong(id[1]);
+            }
+          }
+        }
+      }
+    }
+    long deleted = 0;
+    Path previous = getQueryPath(query);
+    if (Files.exists(previous)) {
+      List<String> stale = new ArrayList<>();
+      try (DataInputStream in = openIds(previous)) {
+        for (long[] id = new long[2]; read(in, id);) {
+          if (!current.contains(id[0], id[1])) {
+            stale.add(toString(id));
+            if (stale.size() >= DELETE_BATCH_SIZE) {
+              indexer.deleteById(stale);
+              deleted += stale.size();
+              stale = new ArrayList<>();
+            }
+          }
+        }
+      }
+      if (!stale.isEmpty()) {
+        indexer.deleteById(stale);
+        deleted += stale.size();
+      }
+    }
+    logger.info("Deleted " + deleted + " documents no longer produced by " + query);
+    synchronized (this) {
+      pendingQueries.add(query);
+    }
+    return deleted;
+  }
+
+  /***
+   * Makes the ids of the queries whose stale documents were deleted the ones the next load
+   * compares against. Called once the load is committed.
+   */
+  synchronized void promote() throws IOException {
+    for (String query : pendingQueries) {
+      Files.move(getNextQueryPath(query), getQueryPath(query),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    pendingQueries.clear();
+  }
+
+  private static DataInputStream openIds(Path path) throws IOException {
+    return new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+  }
+
+  private static boolean read(DataInputStream in, long[] id) throws IOException {
+    try {
+      id[0] = in.readLong();
+    } catch (EOFException e) {
+      return false;
+    }
+    id[1] = in.readLong();
+    return true;
+  }
+
+  private static String toString(long[] id) {
+    return HashCode.fromBytes(ByteBuffer.allocate(ID_BYTES).putLong(id[0]).putLong(id[1])
+        .array()).toString();
+  }
+
+  /***
+   * Writes the ids of one task aside, and moves them in place on {@link #commit()}. Closing an
+   * uncommitted recorder drops them, keeping what a previous run recorded.
+   */
+  static class Recorder implements Closeable {
+
+    private final Path path;
+    private final Path tmp;
+    private final DataOutputStream out;
+    private boolean committed = false;
+
+    private Recorder(Path path, Path tmp) throws IOException {
+      this.path = path;
+      this.tmp = tmp;
+      this.out = null == tmp ? null
+          : new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)));
+    }
+
+    /***
+     * @param id a document id from {@link DocumentIds}
+     */
+    void add(String id) throws IOException {
+      if (null == out) {
+        return;
+      }
+      ByteBuffer bytes = ByteBuffer.wrap(HashCode.fromString(id).asBytes());
+      checkArgument(ID_BYTES == bytes.capacity(), "%s is not a document id", id);
+      out.writeLong(bytes.getLong());
+      out.writeLong(bytes.getLong());
+    }
+
+    void commit() throws IOException {
+      if (null == out) {
+        return;
+      }
+      out.close();
+      Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      committed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (null == out || committed) {
+        return;
+      }
+      out.close();
+      Files.deleteIfExists(tmp);
+    }
+
+  }
+
+  /***
+   * An open addressing set of 128 bit ids, two longs per slot. The all zero id marks an empty
+   * slot and is tracked on its own.
+   */
+  private static class IdSet {
+
+    private long[] slots = new long[2 * 16];
+    private int size = 0;
+    private boolean containsZero = false;
+
+    private static int hash(long high, long low) {
+      // Ids are hashes already
+      return (int) (high ^ (high >>> 32) ^ low);
+    }
+
+    boolean add(long high, long low) {
+      if (0 == high && 0 == low) {
+        boolean added = !containsZero;
+        containsZero = true;
+        return added;
+      }
+      int mask = slots.length / 2 - 1;
+      int slot = hash(high, low) & mask;
+      for (; !isEmpty(slot); slot = (slot + 1) & mask) {
+        if (slots[2 * slot] == high && slots[2 * slot + 1] == low) {
+          return false;
+        }
+      }
+      slots[2 * slot] = high;
+      slots[2 * slot + 1] = low;
+      if (++size * 2 > slots.length / 2) {
+        rehash();
+      }
+      return true;
+    }
+
+    boolean contains(long high, long low) {
+      if (0 == high && 0 == low) {
+        return containsZero;
+      }
+      int mask = slots.length / 2 - 1;
+      for (int slot = hash(high, low) & mask; !isEmpty(slot); slot = (slot + 1) & mask) {
+        if (slots[2 * slot] == high && slots[2 * slot + 1] == low) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean isEmpty(int slot) {
+      return 0 == slots[2 * slot] && 0 == slots[2 * slot + 1];
+    }
+
+    private void rehash() {
+      long[] old = slots;
+      slots = new long[old.length * 2];
+      size = 0;
+      for (int i = 0; i < old.length; i += 2) {
+        if (0 != old[i] || 0 != old[i + 1]) {
+          add(old[i], old[i + 1]);
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,69 @@
+package org.monarch.golr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.Relationship;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import io.scigraph.frames.NodeProperties;
+
+/***
+ * Deterministic document ids, so that a document sent again, by a resumed or an incremental
+ * load, replaces its previous copy instead of being added next to it.
+ *
+ * <p>An id is a murmur3 hash of the query name and of the keys of the document: the subject and
+ * object of a subject/object pair, the columns of a feature row.
+ */
+final class DocumentIds {
+
+  private DocumentIds() {}
+
+  static String forPair(String queryName, Pair<String, String> pair) {
+    return hash(queryName, Arrays.asList(pair.getFirst(), pair.getSecond()));
+  }
+
+  static String forRow(String queryName, Map<String, Object> row) {
+    return hash(queryName, getRowKeys(row));
+  }
+
+  private static String hash(String queryName, List<String> keys) {
+    Hasher hasher = Hashing.murmur3_128().newHasher().putString(queryName, Charsets.UTF_8);
+    for (String key : keys) {
+      hasher.putChar('\0').putString(key, Charsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /***
+   * Identifies a feature row by its columns. Paths are left out, relationships are identified
+   * by type and end points since their ids are not stable across loads.
+   */
+  private static List<String> getRowKeys(Map<String, Object> row) {
+    List<String> keys = new ArrayList<>();
+    for (String column : new TreeSet<>(row.keySet())) {
+      Object value = row.get(column);
+      if (value instanceof Node) {
+        value = ((Node) value).getProperty(NodeProperties.IRI, "");
+      } else if (value instanceof Relationship) {
+        Relationship relationship = (Relationship) value;
+        value = relationship.getType().name() + " "
+            + relationship.getStartNode().getProperty(NodeProperties.IRI, "") + " "
+            + relationship.getEndNode().getProperty(NodeProperties.IRI, "");
+      } else if (value instanceof Path) {
+        continue;
+      }
+      keys.add(column + "=" + value);
+    }
+    return keys;
+  }
+
+}
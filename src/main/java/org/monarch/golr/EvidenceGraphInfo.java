@@ -1,45 +1,111 @@
 package org.monarch.golr;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.prefixcommons.CurieUtil;
+
 import com.tinkerpop.blueprints.Graph;
 
+import io.scigraph.internal.TinkerGraphUtil;
 
-public class EvidenceGraphInfo implements Serializable {
+/***
+ * Accumulates the evidence graph of a single subject/object pair.
+ *
+ * <p>Rows are appended incrementally as Neo4j node and relationship ids. The TinkerGraph is
+ * only materialized once, by {@link #toGraph(GraphDatabaseService, CurieUtil)}, when the
+ * document for the pair is complete.
+ */
+public class EvidenceGraphInfo {
 
-  private static final long serialVersionUID = -3569876626659744588L;
-  final byte[] graphBytes;
   final boolean emitEvidence;
   final Set<Long> ignoredNodes;
+  private final Set<Long> nodes = new LinkedHashSet<>();
+  private final Set<Long> relationships = new LinkedHashSet<>();
+
+  public EvidenceGraphInfo() {
+    this(true, new HashSet<>());
+  }
 
-  public EvidenceGraphInfo(Graph graphPath, boolean emitEvidence, Set<Long> ignoredNodes)
-      throws IOException {
-    this.graphBytes = toByteArray(graphPath);
+  public EvidenceGraphInfo(boolean emitEvidence, Set<Long> ignoredNodes) {
     this.emitEvidence = emitEvidence;
     this.ignoredNodes = ignoredNodes;
   }
 
+  void addRow(Map<String, Object> row) {
+    for (Object value : row.values()) {
+      add(value);
+    }
+  }
+
+  void add(Object value) {
+    if (null == value) {
+      return;
+    }
+    if (value instanceof PropertyContainer) {
+      addElement((PropertyContainer) value);
+    } else if (value instanceof org.neo4j.graphdb.Path) {
+      for (PropertyContainer element : (org.neo4j.graphdb.Path) value) {
+        addElement(element);
+      }
+    } else if (value instanceof Node) {
+      ignoredNodes.add(((Node) value).getId());
+    }
+  }
+
+  private void addElement(PropertyContainer element) {
+    if (element instanceof Node) {
+      nodes.add(((Node) element).getId());
+    } else if (element instanceof Relationship) {
+      relationships.add(((Relationship) element).getId());
+    }
+  }
+
+  Set<Long> getNodeIds() {
+    return nodes;
+  }
+
+  Set<Long> getRelationshipIds() {
+    return relationships;
+  }
+
+  /***
+   * Builds the TinkerGraph for the accumulated elements. Must be called inside a transaction.
+   */
+  Graph toGraph(GraphDatabaseService graphDb, CurieUtil curieUtil) {
+    TinkerGraphUtil tgu = new TinkerGraphUtil(curieUtil);
+    for (long id : nodes) {
+      tgu.addElement(graphDb.getNodeById(id));
+    }
+    for (long id : relationships) {
+      tgu.addElement(graphDb.getRelationshipById(id));
+    }
+    return tgu.getGraph();
+  }
+
   @Override
   public int hashCode() {
-    int hashGraphPath = graphBytes != null ? graphBytes.hashCode() : 0;
-    int hashIgnoredNodes = ignoredNodes != null ? ignoredNodes.hashCode() : 0;
-    return (hashGraphPath + hashIgnoredNodes) * hashGraphPath + hashIgnoredNodes;
+    return Objects.hash(emitEvidence, ignoredNodes, nodes, relationships);
   }
 
   @Override
   public boolean equals(Object other) {
     if (other instanceof EvidenceGraphInfo) {
-      return graphBytes.equals(((EvidenceGraphInfo) other).graphBytes)
-          && emitEvidence == ((EvidenceGraphInfo) other).emitEvidence
-          && ignoredNodes == ((EvidenceGraphInfo) other).ignoredNodes;
+      EvidenceGraphInfo that = (EvidenceGraphInfo) other;
+      return emitEvidence == that.emitEvidence
+          && Objects.equals(ignoredNodes, that.ignoredNodes)
+          && nodes.equals(that.nodes)
+          && relationships.equals(that.relationships);
     }
 
     return false;
@@ -47,7 +113,7 @@ public class EvidenceGraphInfo implements Serializable {
 
   @Override
   public String toString() {
-    return "(" + graphBytes + ", " + emitEvidence + ", " + ignoredNodes + ")";
+    return "(" + nodes + ", " + relationships + ", " + emitEvidence + ", " + ignoredNodes + ")";
   }
 
   public synchronized static String getNewTmpDirForTinkerGraph() throws IOException {
@@ -58,26 +124,4 @@ public class EvidenceGraphInfo implements Serializable {
     return newTmpDir;
   }
 
-  // We have to handle the serialization ourselves because of
-  // https://github.com/tinkerpop/blueprints/issues/285
-  public static byte[] toByteArray(Graph g) throws IOException {
-    // Serialize data object to a byte array
-    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    ObjectOutputStream out = new ObjectOutputStream(bos);
-    out.writeObject(g);
-    out.close();
-
-    // Get the bytes of the serialized object
-    byte[] buf = bos.toByteArray();
-    return buf;
-  }
-
-  public static Graph toGraph(byte[] b) throws IOException, ClassNotFoundException {
-    ByteArrayInputStream bis = new ByteArrayInputStream(b);
-    ObjectInputStream in = new ObjectInputStream(bis);
-    Graph g = (Graph) in.readObject();
-    in.close();
-    return g;
-  }
-
 }
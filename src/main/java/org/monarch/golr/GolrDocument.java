@@ -0,0 +1,158 @@
+package org.monarch.golr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.solr.common.SolrInputDocument;
+
+/***
+ * A document under construction. Values are kept as plain objects and lists, and are only
+ * wrapped into {@link SolrInputDocument} fields when the document is handed to the indexer.
+ *
+ * <p>Closure fields are appended through {@link #addDistinct(String, Object)}, which skips
+ * values already present without building a set per call.
+ */
+class GolrDocument {
+
+  // Documents typically carry around a hundred fields
+  private static final int INITIAL_CAPACITY = 128;
+
+  private final Map<String, Object> fields = new LinkedHashMap<>(INITIAL_CAPACITY);
+
+  /***
+   * Adds a value, or every value of a collection, like
+   * {@link SolrInputDocument#addField(String, Object)} but skipping values the field already
+   * holds. Once a field has several values they are copied into a list of the document's own, so
+   * a collection passed in is never modified.
+   */
+  void addField(String name, Object value) {
+    if (!fields.containsKey(name)) {
+      fields.put(name, value);
+      return;
+    }
+    DistinctValues values = getDistinctValues(name);
+    if (value instanceof Collection) {
+      for (Object v : (Collection<?>) value) {
+        values.addDistinct(v);
+      }
+    } else {
+      values.addDistinct(value);
+    }
+  }
+
+  void setField(String name, Object value) {
+    fields.put(name, value);
+  }
+
+  /***
+   * @return the values of a multi-valued field that skips duplicates, created empty if missing
+   */
+  DistinctValues getDistinctValues(String name) {
+    Object existing = fields.get(name);
+    if (existing instanceof DistinctValues) {
+      return (DistinctValues) existing;
+    }
+    DistinctValues values = new DistinctValues();
+    if (existing instanceof Collection) {
+      for (Object value : (Collection<?>) existing) {
+        values.addDistinct(value);
+      }
+    } else if (null != existing) {
+      values.addDistinct(existing);
+    }
+    fields.put(name, values);
+    return values;
+  }
+
+  void addDistinct(String name, Object value) {
+    getDistinctValues(name).addDistinct(value);
+  }
+
+  /***
+   * @return the value of a field, or its first value if it has several
+   */
+  Object getFieldValue(String name) {
+    Object value = fields.get(name);
+    if (value instanceof Collection) {
+      Collection<?> values = (Collection<?>) value;
+      return values.isEmpty() ? null : values.iterator().next();
+    }
+    return value;
+  }
+
+  SolrInputDocument toSolrInputDocument() {
+    SolrInputDocument doc = new SolrInputDocument();
+    for (Map.Entry<String, Object> field : fields.entrySet()) {
+      Object value = field.getValue();
+      if (value instanceof DistinctValues) {
+        ((DistinctValues) value).seal();
+      }
+      doc.setField(field.getKey(), value);
+    }
+    return doc;
+  }
+
+  @Override
+  public String toString() {
+    return fields.toString();
+  }
+
+  /***
+   * A list that ignores values it already holds. Membership is an open addressing table of
+   * indexes into the list, so appending allocates nothing per value.
+   */
+  static final class DistinctValues extends ArrayList<Object> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MIN_TABLE_SIZE = 16;
+
+    // index + 1 of the value in the list, 0 for a free slot
+    private transient int[] table;
+
+    boolean addDistinct(Object value) {
+      if (null == table || size() * 2 >= table.length) {
+        rehash(Math.max(MIN_TABLE_SIZE, Integer.highestOneBit(Math.max(1, size())) * 4));
+      }
+      int mask = table.length - 1;
+      int slot = spread(Objects.hashCode(value)) & mask;
+      while (0 != table[slot]) {
+        if (Objects.equals(get(table[slot] - 1), value)) {
+          return false;
+        }
+        slot = (slot + 1) & mask;
+      }
+      add(value);
+      table[slot] = size();
+      return true;
+    }
+
+    private void rehash(int capacity) {
+      table = new int[capacity];
+      int mask = capacity - 1;
+      for (int i = 0; i < size(); i++) {
+        int slot = spread(Objects.hashCode(get(i))) & mask;
+        while (0 != table[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = i + 1;
+      }
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+
+    /***
+     * Drops the membership table once the values are final; it is rebuilt if more are added.
+     */
+    void seal() {
+      table = null;
+    }
+
+  }
+
+}
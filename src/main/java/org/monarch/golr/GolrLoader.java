@@ -1,12 +1,14 @@
 package org.monarch.golr;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Collections2.transform;
 import static java.util.Collections.singleton;
+import static java.util.Collections.singletonMap;
 
 import java.io.IOException;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -16,25 +18,27 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 
-import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
-import org.apache.solr.common.SolrInputDocument;
 
 import org.apache.commons.lang3.ClassUtils;
+import org.monarch.golr.beans.Checkpoint;
 import org.monarch.golr.beans.Closure;
 import org.monarch.golr.beans.GolrCypherQuery;
+import org.monarch.golr.beans.QueryRun;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
-import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Result;
@@ -44,22 +48,19 @@ import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.neo4j.graphdb.traversal.Uniqueness;
 import org.prefixcommons.CurieUtil;
 
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.scigraph.frames.CommonProperties;
 import io.scigraph.frames.NodeProperties;
 import io.scigraph.internal.CypherUtil;
 import io.scigraph.internal.GraphApi;
-import io.scigraph.internal.TinkerGraphUtil;
 import io.scigraph.neo4j.DirectedRelationshipType;
 import io.scigraph.neo4j.Graph;
 import io.scigraph.neo4j.GraphUtil;
@@ -95,6 +96,8 @@ public class GolrLoader {
   private final CypherUtil cypherUtil;
   private final CurieUtil curieUtil;
   private final GraphApi api;
+  private final ClosureUtil closureUtil;
+  private final SolrDocUtil docUtil;
 
   private static final RelationshipType inTaxon =
       RelationshipType.withName("http://purl.obolibrary.org/obo/RO_0002162");
@@ -115,6 +118,17 @@ public class GolrLoader {
   private static final Label GENOTYPE_LABEL = Label.label("genotype");
   
   private final static int BATCH_SIZE = 10000;
+  private final static int WARM_UP_CHUNK_SIZE = 1000;
+
+  static final String PARTITION_PARAM = "partition";
+  static final String PARTITIONS_PARAM = "partitions";
+  // {param} or $param, the two parameter syntaxes of Cypher
+  private static final Pattern PARTITION_PATTERN =
+      Pattern.compile("\\{\\s*" + PARTITION_PARAM + "\\s*\\}|\\$" + PARTITION_PARAM + "\\b");
+  private static final Pattern PARTITIONS_PATTERN =
+      Pattern.compile("\\{\\s*" + PARTITIONS_PARAM + "\\s*\\}|\\$" + PARTITIONS_PARAM + "\\b");
+
+  static final String ID_FIELD = "id";
 
   private static final String ENTAILMENT_REGEX = "^\\[(\\w*):?([\\w:|\\.\\/#`]*)([!*\\.\\d]*)\\]$";
   private static Pattern ENTAILMENT_PATTERN = Pattern.compile(ENTAILMENT_REGEX);
@@ -131,22 +145,119 @@ public class GolrLoader {
   private Collection<Node> chromsomeEntailment;
   private TraversalDescription geneDescription;
   private Collection<String> variantStrings;
+  private String diseaseQuery;
+  private String phenotypeQuery;
+  private NodeAttributeCache taxonCache;
+  private NodeAttributeCache chromosomeCache;
+  private NodeAttributeCache geneCache;
+  private NodeAttributeCache orthologCache;
+  private NodeAttributeCache diseaseCache;
+  private NodeAttributeCache phenotypeCache;
+  private volatile Optional<ChangeSet> changeSet = Optional.empty();
+  private volatile Checkpoints checkpoints = Checkpoints.disabled();
+  private volatile DocumentIdLog documentIds = DocumentIdLog.disabled();
 
   @Inject
   GolrLoader(GraphDatabaseService graphDb, Graph graph, CypherUtil cypherUtil, CurieUtil curieUtil,
-      EvidenceProcessor processor, GraphApi api) {
+      EvidenceProcessor processor, GraphApi api, ClosureUtil closureUtil) {
     this.graphDb = graphDb;
     this.cypherUtil = cypherUtil;
     this.curieUtil = curieUtil;
     this.graph = graph;
     this.processor = processor;
     this.api = api;
+    this.closureUtil = closureUtil;
+    this.docUtil = new SolrDocUtil(closureUtil);
     try (Transaction tx = graphDb.beginTx()) {
+      diseaseQuery = prepareQuery("disease.cypher");
+      phenotypeQuery = prepareQuery("phenotype.cypher");
       buildTraversals();
+      buildCaches();
       tx.success();
     }
   }
 
+  private long countNodes(Label label) {
+    Result result = graphDb.execute("MATCH (n:`" + label.name() + "`) RETURN count(n) AS count");
+    return (Long) result.next().get("count");
+  }
+
+  /***
+   * Sizes the node caches from the label counts of the graph, the subjects and objects that get
+   * a taxon, gene or chromosome, and the features that get diseases and phenotypes, are mostly
+   * genes, variants and genotypes.
+   */
+  private void buildCaches() {
+    long genes = countNodes(GENE_LABEL);
+    long features = genes + countNodes(VARIANT_LABEL) + countNodes(GENOTYPE_LABEL);
+    taxonCache = new NodeAttributeCache("taxon", features);
+    chromosomeCache = new NodeAttributeCache("chromosome", features);
+    geneCache = new NodeAttributeCache("gene", features);
+    orthologCache = new NodeAttributeCache("ortholog", genes);
+    diseaseCache = new NodeAttributeCache("disease", features);
+    phenotypeCache = new NodeAttributeCache("phenotype", features);
+  }
+
+  /***
+   * Fills the taxon, gene and chromosome caches for every gene, sequence feature and genotype,
+   * so that query workers only look them up. Chunks of nodes are swept in parallel, each in its
+   * own transaction.
+   */
+  void warmUp(int threads) throws InterruptedException, ExecutionException {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    // A node may carry several of the labels
+    NodeIdSet features = new NodeIdSet();
+    try (Transaction tx = graphDb.beginTx()) {
+      for (Label label : Arrays.asList(GENE_LABEL, VARIANT_LABEL, GENOTYPE_LABEL)) {
+        graphDb.findNodes(label).forEachRemaining(node -> features.add(node.getId()));
+      }
+      tx.success();
+    }
+    long[] ids = features.toArray();
+    ExecutorService pool = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("Warm up %d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int start = 0; start < ids.length; start += WARM_UP_CHUNK_SIZE) {
+        int from = start;
+        int to = Math.min(ids.length, start + WARM_UP_CHUNK_SIZE);
+        futures.add(pool.submit(() -> warmUp(ids, from, to)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    logger.info("Warmed node caches for " + ids.length + " nodes in " + stopwatch);
+    logCacheStats("Warm up");
+  }
+
+  private void warmUp(long[] ids, int from, int to) {
+    try (Transaction tx = graphDb.beginTx()) {
+      for (int i = from; i < to; i++) {
+        Node node = graphDb.getNodeById(ids[i]);
+        getCachedTaxon(node);
+        // Same lookups as serializerRow, genes are their own gene
+        if (!node.hasLabel(GENE_LABEL)) {
+          getCachedGene(node);
+        }
+        getCachedChromosome(node);
+      }
+      tx.success();
+    }
+  }
+
+  /***
+   * Logs the cumulative hit rate and footprint of the node caches.
+   */
+  void logCacheStats(String context) {
+    for (NodeAttributeCache cache : Arrays.asList(taxonCache, chromosomeCache, geneCache,
+        orthologCache, diseaseCache, phenotypeCache)) {
+      cache.logStats(context);
+    }
+  }
+
   private void buildTraversals() {
     parts_of = cypherUtil.getEntailedRelationshipTypes(
         Collections.singleton("http://purl.obolibrary.org/obo/BFO_0000051"));
@@ -237,6 +348,29 @@ public class GolrLoader {
 
   }
 
+  /***
+   * The relationships followed from a subject or object to the taxon, gene and chromosome whose
+   * fields are copied into its documents, in the direction they are followed.
+   */
+  Collection<DirectedRelationshipType> getFeatureFieldTypes() {
+    List<DirectedRelationshipType> types = new ArrayList<>();
+    types.add(new DirectedRelationshipType(inTaxon, Direction.OUTGOING));
+    for (RelationshipType part_of : parts_of) {
+      types.add(new DirectedRelationshipType(part_of, Direction.BOTH));
+    }
+    for (RelationshipType subSequenceOf : subSequenceOfs) {
+      types.add(new DirectedRelationshipType(subSequenceOf, Direction.INCOMING));
+    }
+    for (RelationshipType variant : variants) {
+      types.add(new DirectedRelationshipType(variant, Direction.OUTGOING));
+    }
+    for (RelationshipType type : Arrays.asList(hasGenotype, derivesFrom, derivesSeqFromGene,
+        location, begin, reference)) {
+      types.add(new DirectedRelationshipType(type, Direction.OUTGOING));
+    }
+    return types;
+  }
+
   Optional<Node> getTaxon(Node source) {
     for (Path path : taxonDescription.traverse(source)) {
       if (path.length() > 0 && path.lastRelationship().isType(inTaxon)) {
@@ -268,7 +402,7 @@ public class GolrLoader {
     return Optional.empty();
   }
 
-  Collection<Node> getOrthologs(Node source) throws IOException {
+  Collection<Node> getOrthologs(Node source) {
     Collection<Node> orthologs = new HashSet<>();
     for (Path path : orthologDescription.traverse(source)) {
       if (path.endNode().hasLabel(GENE_LABEL) && path.endNode() != source) {
@@ -278,199 +412,288 @@ public class GolrLoader {
     return orthologs;
   }
 
-  Collection<Node> getDiseases(Node source) throws IOException {
-    String cypher = Resources.toString(Resources.getResource("disease.cypher"), Charsets.UTF_8);
-    Multimap<String, Object> params = HashMultimap.create();
-    params.put("id", source.getId());
-    Result result = cypherUtil.execute(cypher, params);
-    Collection<Node> diseases = new HashSet<>();
-    while (result.hasNext()) {
-      Map<String, Object> row = result.next();
-      diseases.add((Node) row.get("disease"));
+  /***
+   * Reads a query from the classpath and resolves its entailed relationships. The result only
+   * takes parameters, so Neo4j can reuse the plan for every execution.
+   */
+  private String prepareQuery(String resource) {
+    try {
+      String cypher = Resources.toString(Resources.getResource(resource), Charsets.UTF_8);
+      return cypherUtil.resolveRelationships(cypher);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read " + resource, e);
     }
-    return diseases;
   }
 
-  Collection<Node> getPhenotypes(Node source) throws IOException {
-    String cypher = Resources.toString(Resources.getResource("phenotype.cypher"), Charsets.UTF_8);
-    Multimap<String, Object> params = HashMultimap.create();
-    params.put("id", source.getId());
-    Result result = cypherUtil.execute(cypher, params);
-    Collection<Node> phenotypes = new HashSet<>();
+  private Collection<Node> getNodes(String preparedQuery, Node source, String column) {
+    Result result = graphDb.execute(preparedQuery, singletonMap("id", (Object) source.getId()));
+    Collection<Node> nodes = new HashSet<>();
     while (result.hasNext()) {
       Map<String, Object> row = result.next();
-      phenotypes.add((Node) row.get("phenotype"));
+      nodes.add((Node) row.get(column));
     }
-    return phenotypes;
+    return nodes;
   }
 
+  Collection<Node> getDiseases(Node source) {
+    return getNodes(diseaseQuery, source, "disease");
+  }
 
-  LoadingCache<Node, Optional<Node>> taxonCache =
-      CacheBuilder.newBuilder().maximumSize(100_000).build(new CacheLoader<Node, Optional<Node>>() {
-        @Override
-        public Optional<Node> load(Node source) throws Exception {
-          return getTaxon(source);
-        }
-      });
+  Collection<Node> getPhenotypes(Node source) {
+    return getNodes(phenotypeQuery, source, "phenotype");
+  }
 
-  LoadingCache<Node, Optional<Node>> chromosomeCache =
-      CacheBuilder.newBuilder().maximumSize(100_000).build(new CacheLoader<Node, Optional<Node>>() {
-        @Override
-        public Optional<Node> load(Node source) throws Exception {
-          return getChromosome(source);
-        }
-      });
 
-  LoadingCache<Node, Optional<Node>> geneCache =
-      CacheBuilder.newBuilder().maximumSize(100_000).build(new CacheLoader<Node, Optional<Node>>() {
-        @Override
-        public Optional<Node> load(Node source) throws Exception {
-          return getGene(source);
-        }
-      });
+  private Optional<Node> getCached(NodeAttributeCache cache, Node source,
+      Function<Node, Optional<Node>> loader) {
+    long id = cache.get(source.getId(),
+        nodeId -> loader.apply(source).map(Node::getId).orElse(NodeAttributeCache.NONE));
+    return NodeAttributeCache.NONE == id ? Optional.empty() : Optional.of(graphDb.getNodeById(id));
+  }
 
-  LoadingCache<Node, Collection<Node>> orthologCache = CacheBuilder.newBuilder()
-      .maximumSize(100_000).build(new CacheLoader<Node, Collection<Node>>() {
-        @Override
-        public Collection<Node> load(Node source) throws Exception {
-          return getOrthologs(source);
-        }
-      });
+  Optional<Node> getCachedTaxon(Node source) {
+    return getCached(taxonCache, source, this::getTaxon);
+  }
+
+  Optional<Node> getCachedChromosome(Node source) {
+    return getCached(chromosomeCache, source, this::getChromosome);
+  }
 
+  Optional<Node> getCachedGene(Node source) {
+    return getCached(geneCache, source, this::getGene);
+  }
 
-  long process(GolrCypherQuery query, String solrServer, Object solrLock)
-      throws IOException, ExecutionException, ClassNotFoundException, SolrServerException {
-    return process(query, solrServer, solrLock, Optional.empty());
+  private Collection<Node> getCachedAll(NodeAttributeCache cache, Node source,
+      Function<Node, Collection<Node>> loader) {
+    long[] ids = cache.getAll(source.getId(), nodeId -> {
+      Collection<Node> nodes = loader.apply(source);
+      long[] nodeIds = new long[nodes.size()];
+      int i = 0;
+      for (Node node : nodes) {
+        nodeIds[i++] = node.getId();
+      }
+      return nodeIds;
+    });
+    Collection<Node> nodes = new ArrayList<>(ids.length);
+    for (long id : ids) {
+      nodes.add(graphDb.getNodeById(id));
+    }
+    return nodes;
   }
 
-  long process(GolrCypherQuery query, String solrServer, Object solrLock, Optional<String> metaSourceQuery)
-      throws IOException, ExecutionException, ClassNotFoundException, SolrServerException {
+  Collection<Node> getCachedOrthologs(Node source) {
+    return getCachedAll(orthologCache, source, this::getOrthologs);
+  }
+
+  Collection<Node> getCachedDiseases(Node source) {
+    return getCachedAll(diseaseCache, source, this::getDiseases);
+  }
+
+  Collection<Node> getCachedPhenotypes(Node source) {
+    return getCachedAll(phenotypeCache, source, this::getPhenotypes);
+  }
+
+
+  long process(GolrCypherQuery query, SolrIndexer indexer)
+      throws IOException, ExecutionException, InterruptedException {
+    return process(query, indexer, Optional.empty());
+  }
+
+  /***
+   * Processes every partition of the query in turn.
+   */
+  long process(GolrCypherQuery query, SolrIndexer indexer, Optional<String> metaSourceQuery)
+      throws IOException, ExecutionException, InterruptedException {
+    long recordCount = 0;
+    for (int partition = 0; partition < query.getPartitions(); partition++) {
+      recordCount += process(query, indexer, metaSourceQuery, partition, new QueryRun(
+          getTaskName(metaSourceQuery.orElse(query.getQuery()), partition, query.getPartitions())));
+    }
+    return recordCount;
+  }
+
+  /***
+   * Processes one subject partition of the query in its own transaction.
+   *
+   * <p>Partitions split the rows by subject, so every subject/object pair, and thus its evidence
+   * graph, is produced by exactly one partition and the pair ordering that
+   * {@link #serializeGolrQuery} relies on holds within each partition.
+   *
+   * <p>A partition completed by a previous run is skipped, one that was interrupted resumes
+   * after its checkpointed pair.
+   *
+   * @param run named after the task, receives the row and document counts and the wall time
+   * @return the number of rows
+   */
+  long process(GolrCypherQuery query, SolrIndexer indexer, Optional<String> metaSourceQuery,
+      int partition, QueryRun run) throws IOException, ExecutionException, InterruptedException {
+    checkPartitions(query);
+    checkArgument(partition >= 0 && partition < query.getPartitions(),
+        "Partition %s out of range for %s partitions", partition, query.getPartitions());
+    Stopwatch stopwatch = Stopwatch.createStarted();
     long recordCount = 0;
 
-    try (Transaction tx = graphDb.beginTx()) {
+    Optional<Checkpoint> checkpoint = checkpoints.get(run.getName());
+    if (checkpoint.isPresent() && checkpoint.get().isComplete()) {
+      logger.info("Skipping " + run.getName() + ", completed by a previous run");
+      return 0;
+    }
+    Checkpoints.Tracker tracker = checkpoints.track(run.getName());
 
-      Result result = cypherUtil.execute(query.getQuery());
+    try (Transaction tx = graphDb.beginTx();
+        DocumentIdLog.Recorder ids = documentIds.record(run.getName())) {
+
+      resolveClosures(query);
+
+      Multimap<String, Object> params = HashMultimap.create();
+      if (query.getPartitions() > 1) {
+        params.put(PARTITION_PARAM, partition);
+        params.put(PARTITIONS_PARAM, query.getPartitions());
+      }
+      Result result = cypherUtil.execute(query.getQuery(), params);
 
       // Golr queries need to have the evidence graphs merged, whereas chromosome queries don't.
       boolean isGolrQuery =
           result.columns().contains("subject") && result.columns().contains("object");
 
       if (isGolrQuery) {
-        recordCount = serializeGolrQuery(query, result, solrServer, solrLock, metaSourceQuery);
+        Optional<Pair<String, String>> resumeAfter = checkpoint.filter(c -> null != c.getSubject())
+            .map(c -> new Pair<>(c.getSubject(), c.getObject()));
+        recordCount = serializeGolrQuery(query, result, indexer, metaSourceQuery, run,
+            resumeAfter, tracker, ids);
       } else {
-        recordCount = serializedFeatureQuery(query, result, solrServer, solrLock, metaSourceQuery);
+        recordCount = serializedFeatureQuery(query, result, indexer, metaSourceQuery, run,
+            checkpoint.map(Checkpoint::getRow), tracker, ids);
       }
 
+      ids.commit();
       tx.success();
     }
+    tracker.finish();
 
+    closureUtil.logStats(metaSourceQuery.orElse(query.getQuery()));
+    logCacheStats(metaSourceQuery.orElse(query.getQuery()));
+    run.setRows(recordCount);
+    run.setMillis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
     return recordCount;
   }
 
   private int serializeGolrQuery(GolrCypherQuery query, Result result,
-      String solrServer, Object solrLock, Optional<String> metaSourceQuery)
-      throws IOException, ClassNotFoundException, ExecutionException, SolrServerException {
-
-    SolrInputDocument resultDoc = new SolrInputDocument();
+      SolrIndexer indexer, Optional<String> metaSourceQuery, QueryRun run,
+      Optional<Pair<String, String>> resumeAfter, Checkpoints.Tracker tracker,
+      DocumentIdLog.Recorder ids) throws IOException, ExecutionException, InterruptedException {
+
+    String queryName = metaSourceQuery.orElse(query.getQuery());
+    Pair<String, String> lastPair = null;
+    Pair<String, String> lastSeenPair = null;
+    Map<String, Object> firstRow = null;
     EvidenceGraphInfo resultGraph = null;
-    Pair<String, String> lastPair = new Pair<>("", "");
 
-    Collection<SolrInputDocument> docList = new ArrayList<>();
-    
-    int recordCount = 0;
-    boolean isNewPair = true;
-
-    while (result.hasNext()) {
-
-      Map<String, Object> row = result.next();
+    SolrIndexer.Batch batch = indexer.openBatch();
 
-      String subjectIri = (String) ((Node) row.get("subject")).getProperty(NodeProperties.IRI);
-      String objectIri = (String) ((Node) row.get("object")).getProperty(NodeProperties.IRI);
-
-      Pair<String, String> pair = new Pair<>(subjectIri, objectIri);
+    int recordCount = 0;
+    try {
+      boolean passedCheckpoint = false;
 
-      if (recordCount == 0) {
-        lastPair = new Pair<>(subjectIri, objectIri);
-      }
+      // Rows of a pair are consecutive; the document is only built once all of them are seen
+      while (result.hasNext()) {
 
-      if (!pair.equals(lastPair)) {
+        Map<String, Object> row = result.next();
 
-        resultDoc = addEvidenceToDoc(resultDoc, resultGraph, metaSourceQuery);
-        docList.add(resultDoc);
+        String subjectIri = (String) ((Node) row.get("subject")).getProperty(NodeProperties.IRI);
+        String objectIri = (String) ((Node) row.get("object")).getProperty(NodeProperties.IRI);
 
-        if (docList.size() % BATCH_SIZE == 0) {
-          addAndCommitToSolr(solrServer, docList, solrLock);
-          docList.clear();
+        Pair<String, String> pair = new Pair<>(subjectIri, objectIri);
+        if (!pair.equals(lastSeenPair)) {
+          // Pairs skipped from the checkpoint or left unaffected are still produced
+          ids.add(DocumentIds.forPair(queryName, pair));
+          lastSeenPair = pair;
         }
 
-        // Reset control flow variables
-        lastPair = pair;
-        isNewPair = true;
-
-        // Make new doc and graph
-        resultDoc = new SolrInputDocument();
-        resultGraph = null;
-
-      }
-
-      if (isNewPair) {
-        Set<Long> ignoredNodes = new HashSet<>();
-        Writer stringWriter = new StringWriter();
-        JsonGenerator stringGenerator = new JsonFactory().createGenerator(stringWriter);
-        TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-
-        stringGenerator.writeStartObject();
-        resultDoc = serializerRow(row, tguEvidenceGraph, ignoredNodes, query);
-        resultGraph = new EvidenceGraphInfo(tguEvidenceGraph.getGraph(), true, ignoredNodes);
-        isNewPair = false;
-      } else {
-        TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(EvidenceGraphInfo.toGraph(resultGraph.graphBytes), curieUtil);
-        Set<Long> ignoredNodes = resultGraph.ignoredNodes;
-
-        for (Entry<String, Object> entry : row.entrySet()) {
-          Object value = entry.getValue();
-
-          if (null == value) {
+        if (resumeAfter.isPresent()) {
+          // Rows up to and including the checkpointed pair were indexed by a previous run
+          if (pair.equals(resumeAfter.get())) {
+            passedCheckpoint = true;
+            continue;
+          } else if (!passedCheckpoint) {
             continue;
           }
+          logger.info("Resuming " + run.getName() + " after " + resumeAfter.get());
+          resumeAfter = Optional.empty();
+        }
 
-          // Add evidence
-          if (value instanceof PropertyContainer) {
-            tguEvidenceGraph.addElement((PropertyContainer) value);
-          } else if (value instanceof Path) {
-            tguEvidenceGraph.addPath((Path) value);
-          } else if (value instanceof Node) {
-            ignoredNodes.add(((Node) value).getId());
+        if (!pair.equals(lastPair)) {
+          if (null != lastPair) {
+            addPairDocument(batch, query, queryName, lastPair, firstRow, resultGraph,
+                metaSourceQuery);
+            if (batch.size() >= BATCH_SIZE) {
+              run.addDocs(batch.size());
+              batch.close(tracker.queue(lastPair));
+              batch = indexer.openBatch();
+            }
           }
+          lastPair = pair;
+          firstRow = row;
+          resultGraph = new EvidenceGraphInfo();
         }
-        resultGraph =
-            new EvidenceGraphInfo(tguEvidenceGraph.getGraph(), resultGraph.emitEvidence, ignoredNodes);
+
+        resultGraph.addRow(row);
+        recordCount++;
       }
 
-      if (!result.hasNext()) {
-        resultDoc = addEvidenceToDoc(resultDoc, resultGraph, metaSourceQuery);
-        docList.add(resultDoc);
+      checkState(!resumeAfter.isPresent() || passedCheckpoint,
+          "Checkpoint %s of %s is no longer in the results, remove it to reload the query",
+          resumeAfter, run.getName());
+
+      if (null != lastPair) {
+        addPairDocument(batch, query, queryName, lastPair, firstRow, resultGraph,
+            metaSourceQuery);
       }
-      recordCount++;
-    }
 
-    if (docList.size() > 0) {
-      addAndCommitToSolr(solrServer, docList, solrLock);
-      docList.clear();
+      run.addDocs(batch.size());
+      batch.close(tracker.queue(lastPair));
+    } finally {
+      // Only this query's unsent documents are dropped, the indexer carries on
+      batch.abort();
     }
 
     return recordCount;
   }
 
-  private SolrInputDocument addEvidenceToDoc(SolrInputDocument resultDoc,
+  /***
+   * Builds the document of a subject/object pair from its first row and accumulated evidence,
+   * unless an incremental run leaves the pair unaffected.
+   */
+  private void addPairDocument(SolrIndexer.Batch batch, GolrCypherQuery query,
+      String queryName, Pair<String, String> pair, Map<String, Object> firstRow,
       EvidenceGraphInfo resultGraph, Optional<String> metaSourceQuery)
-      throws IOException, ClassNotFoundException {
+      throws IOException, ExecutionException, InterruptedException {
+    if (changeSet.isPresent() && !affects(changeSet.get(), resultGraph)) {
+      return;
+    }
+    GolrDocument resultDoc = serializerRow(firstRow, resultGraph, query);
+    resultDoc = addEvidenceToDoc(resultDoc, resultGraph, metaSourceQuery);
+    resultDoc.setField(ID_FIELD, DocumentIds.forPair(queryName, pair));
+    batch.add(resultDoc.toSolrInputDocument());
+  }
 
-    ClosureUtil closureUtil = new ClosureUtil(graphDb, curieUtil);
-    SolrDocUtil docUtil = new SolrDocUtil(closureUtil);
+  private boolean affects(ChangeSet changes, EvidenceGraphInfo resultGraph) {
+    if (changes.affects(resultGraph.getNodeIds())) {
+      return true;
+    }
+    for (long id : resultGraph.getRelationshipIds()) {
+      if (changes.affects(graphDb.getRelationshipById(id))) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-    com.tinkerpop.blueprints.Graph evidenceGraph =
-            EvidenceGraphInfo.toGraph(resultGraph.graphBytes);
+  GolrDocument addEvidenceToDoc(GolrDocument resultDoc,
+      EvidenceGraphInfo resultGraph, Optional<String> metaSourceQuery)
+      throws IOException {
+
+    com.tinkerpop.blueprints.Graph evidenceGraph = resultGraph.toGraph(graphDb, curieUtil);
     processor.addAssociations(evidenceGraph);
     String evidenceBlob = processor.getEvidenceGraph(evidenceGraph, metaSourceQuery);
     if (!resultDoc.getFieldValue("subject_category").equals("ontology")
@@ -495,53 +718,121 @@ public class GolrLoader {
 
   }
 
-  private static void addAndCommitToSolr(String solrServer,
-      Collection<SolrInputDocument>docList, Object solrLock) throws SolrServerException, IOException {
-    synchronized (solrLock) {
-      HttpSolrClient solrClient = new HttpSolrClient.Builder(solrServer).build();
-      // Set the socket and connect timeouts the same as solr.jetty.http.idleTimeout
-      solrClient.setSoTimeout(200000);
-      solrClient.setConnectionTimeout(200000);
-      try {
-        solrClient.add(docList);
-      } catch (IOException|SolrServerException e) {
-        logger.warning("Caught: " + e);
-        logger.info("Retrying add");
-        solrClient.add(docList);
+  /***
+   * Feature rows are resumed after the row with the checkpointed document id, which like the
+   * pairs of subject/object queries relies on the query returning its rows in a stable order.
+   */
+  private long serializedFeatureQuery(GolrCypherQuery query, Result result,
+      SolrIndexer indexer, Optional<String> metaSourceQuery, QueryRun run,
+      Optional<String> resumeAfter, Checkpoints.Tracker tracker, DocumentIdLog.Recorder ids)
+          throws IOException, ExecutionException, InterruptedException {
+
+    String queryName = metaSourceQuery.orElse(query.getQuery());
+    int recordCount = 0;
+    SolrIndexer.Batch batch = indexer.openBatch();
+
+    try {
+      boolean passedCheckpoint = false;
+      String lastRow = null;
+      while (result.hasNext()) {
+        Map<String, Object> row = result.next();
+        String id = DocumentIds.forRow(queryName, row);
+        ids.add(id);
+        if (resumeAfter.isPresent()) {
+          // Rows up to and including the checkpointed one were indexed by a previous run
+          if (id.equals(resumeAfter.get())) {
+            passedCheckpoint = true;
+            continue;
+          } else if (!passedCheckpoint) {
+            continue;
+          }
+          logger.info("Resuming " + run.getName() + " after row " + resumeAfter.get());
+          resumeAfter = Optional.empty();
+        }
+        recordCount++;
+        GolrDocument doc = serializerRow(row, new EvidenceGraphInfo(), query);
+        doc.setField(ID_FIELD, id);
+        batch.add(doc.toSolrInputDocument());
+        lastRow = id;
+        if (batch.size() >= BATCH_SIZE) {
+          run.addDocs(batch.size());
+          batch.close(tracker.queueRow(lastRow));
+          batch = indexer.openBatch();
+        }
       }
-      solrClient.commit();
-      solrClient.close();
+
+      checkState(!resumeAfter.isPresent() || passedCheckpoint,
+          "Checkpoint %s of %s is no longer in the results, remove it to reload the query",
+          resumeAfter, run.getName());
+
+      run.addDocs(batch.size());
+      batch.close(tracker.queueRow(lastRow));
+    } finally {
+      batch.abort();
     }
+
+    return recordCount;
   }
 
-  private long serializedFeatureQuery(GolrCypherQuery query, Result result, 
-      String solrServer, Object solrLock, Optional<String> metaSourceQuery)
-          throws IOException, ExecutionException, SolrServerException {
+  /***
+   * Restricts subject/object queries to the documents affected by the change set. Feature
+   * queries are always emitted in full and replace their documents by id.
+   */
+  void setChangeSet(ChangeSet changeSet) {
+    this.changeSet = Optional.of(changeSet);
+  }
 
-    int recordCount = 0;
-    Collection<SolrInputDocument> docList = new ArrayList<SolrInputDocument>();
+  void setCheckpoints(Checkpoints checkpoints) {
+    this.checkpoints = checkpoints;
+  }
 
+  void setDocumentIds(DocumentIdLog documentIds) {
+    this.documentIds = documentIds;
+  }
 
-    while (result.hasNext()) {
-      SolrInputDocument doc = new SolrInputDocument();
-      Set<Long> ignoredNodes = new HashSet<>();
-      TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-      recordCount++;
-      Map<String, Object> row = result.next();
-      doc = serializerRow(row, tguEvidenceGraph, ignoredNodes, query);
-      docList.add(doc);
-      if (docList.size() != 0 && docList.size() % BATCH_SIZE == 0) {
-        addAndCommitToSolr(solrServer, docList, solrLock);
-        docList.clear();
-      }
+  /***
+   * Partitions are only disjoint if the query restricts its rows with both parameters, otherwise
+   * every partition would emit every document.
+   */
+  static void checkPartitions(GolrCypherQuery query) {
+    checkArgument(query.getPartitions() >= 1, "Invalid partition count %s",
+        query.getPartitions());
+    checkArgument(query.getPartitions() == 1
+        || (PARTITION_PATTERN.matcher(query.getQuery()).find()
+            && PARTITIONS_PATTERN.matcher(query.getQuery()).find()),
+        "A query split in %s partitions must restrict its rows with the {%s} and {%s} parameters",
+        query.getPartitions(), PARTITION_PARAM, PARTITIONS_PARAM);
+  }
+
+  static String getTaskName(String queryName, int partition, int partitions) {
+    if (partitions > 1) {
+      return queryName + " [" + (partition + 1) + "/" + partitions + "]";
+    }
+    return queryName;
+  }
+
+  /***
+   * Resolves the relationship types of one of the query's closures. Resolution happens once per
+   * query; the immutable result is shared by every row and reused as a closure cache key.
+   */
+  Set<DirectedRelationshipType> getClosureTypes(GolrCypherQuery query, String key, String value) {
+    return query.getResolvedClosures().computeIfAbsent(key,
+        k -> ImmutableSet.copyOf(resolveRelationships(k, value)));
+  }
+
+  private void resolveClosures(GolrCypherQuery query) {
+    if (query.getSubjectClosure() != null) {
+      getClosureTypes(query, "subject_closure", query.getSubjectClosure());
     }
-    
-    if (docList.size() > 0) {
-      addAndCommitToSolr(solrServer, docList, solrLock);
-      docList.clear();
+    if (query.getObjectClosure() != null) {
+      getClosureTypes(query, "object_closure", query.getObjectClosure());
+    }
+    if (query.getRelationClosure() != null) {
+      getClosureTypes(query, "relation_closure", query.getRelationClosure());
+    }
+    if (query.getEvidenceClosure() != null) {
+      getClosureTypes(query, "evidence_closure", query.getEvidenceClosure());
     }
-    
-    return recordCount;
   }
 
   private Set<DirectedRelationshipType> resolveRelationships(String key, String value) {
@@ -568,14 +859,11 @@ public class GolrLoader {
     return rels;
   }
 
-  SolrInputDocument serializerRow(Map<String, Object> row,
-      TinkerGraphUtil tguEvidenceGraph, Set<Long> ignoredNodes, GolrCypherQuery query)
+  GolrDocument serializerRow(Map<String, Object> row, EvidenceGraphInfo evidence,
+      GolrCypherQuery query)
       throws IOException, ExecutionException {
     boolean emitEvidence = true;
-    SolrInputDocument doc = new SolrInputDocument();
-    ClosureUtil closureUtil = new ClosureUtil(graphDb, curieUtil);
-    SolrDocUtil docUtil = new SolrDocUtil(closureUtil);
-
+    GolrDocument doc = new GolrDocument();
     for (Entry<String, Object> entry : row.entrySet()) {
       String key = entry.getKey();
       Object value = entry.getValue();
@@ -585,20 +873,14 @@ public class GolrLoader {
       }
 
       // Add evidence
-      if (value instanceof PropertyContainer) {
-        tguEvidenceGraph.addElement((PropertyContainer) value);
-      } else if (value instanceof Path) {
-        tguEvidenceGraph.addPath((Path) value);
-      } else if (value instanceof Node) {
-        ignoredNodes.add(((Node) value).getId());
-      }
+      evidence.add(value);
 
       if (value instanceof Node) {
 
         // TODO: Clean this up
         if ("subject".equals(key) || "object".equals(key)) {
           Node node = (Node) value;
-          Optional<Node> taxon = taxonCache.get(node);
+          Optional<Node> taxon = getCachedTaxon(node);
           if (taxon.isPresent()) {
             docUtil.addNodes(key + "_taxon", singleton((Node) taxon.get()), doc);
           }
@@ -608,13 +890,13 @@ public class GolrLoader {
             if (node.hasLabel(GENE_LABEL)) {
                 docUtil.addNodes(key + "_gene", singleton((Node) node), doc);
             } else {
-              Optional<Node> gene = geneCache.get(node);
+              Optional<Node> gene = getCachedGene(node);
               if (gene.isPresent()) {
                   docUtil.addNodes(key + "_gene", singleton((Node) gene.get()), doc);
               }
             }
 
-            Optional<Node> chromosome = chromosomeCache.get(node);
+            Optional<Node> chromosome = getCachedChromosome(node);
             if (chromosome.isPresent()) {
                 docUtil.addNodes(key + "_chromosome", singleton((Node) chromosome.get()), doc);
             }
@@ -622,7 +904,7 @@ public class GolrLoader {
         }
 
         if ("subject".equals(key)) {
-          Collection<Node> orthologs = orthologCache.get((Node) value);
+          Collection<Node> orthologs = getCachedOrthologs((Node) value);
           Collection<String> orthologsId = transform(orthologs, new Function<Node, String>() {
             @Override
             public String apply(Node node) {
@@ -635,50 +917,39 @@ public class GolrLoader {
 
         if ("feature".equals(key)) {
           // Add disease and phenotype for feature
-          docUtil.addNodes("disease", getDiseases((Node) value), doc);
-          docUtil.addNodes("phenotype", getPhenotypes((Node) value), doc);
+          docUtil.addNodes("disease", getCachedDiseases((Node) value), doc);
+          docUtil.addNodes("phenotype", getCachedPhenotypes((Node) value), doc);
         }
 
         if (query.getCollectedTypes().containsKey(key)) {
           docUtil.addNodes(key, singleton((Node) value), query.getCollectedTypes().get(key), doc);
         }
         else if ("subject".equals(key) || "object".equals(key) || "relation".equals(key) || "evidence".equals(key)) {
-          Set<DirectedRelationshipType> closureTypes = new HashSet<>();
-          closureTypes.addAll(SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+          Collection<DirectedRelationshipType> closureTypes = SolrDocUtil.DEFAULT_CLOSURE_TYPES;
 
           if ("subject".equals(key)){
             // Add all equivalent IDs to subject
-            List<Closure> closures = new ArrayList<>();
-            closures.add(closureUtil.getClosure((Node) value, SolrDocUtil.EQUIVALENT_EDGES));
-            docUtil.addClosure("subject_eq", ClosureUtil.collectIdClosure(closures), doc);
+            docUtil.addClosure("subject_eq",
+                closureUtil.getClosure((Node) value, SolrDocUtil.EQUIVALENT_EDGES).getCuries(), doc);
 
             if (query.getSubjectClosure() != null) {
-              Set<DirectedRelationshipType> rels = resolveRelationships("subject_closure", query.getSubjectClosure());
-              closureTypes.clear();
-              closureTypes.addAll(rels);
+              closureTypes = getClosureTypes(query, "subject_closure", query.getSubjectClosure());
             }
           }
           if ("object".equals(key)){
             // Add all equivalent IDs to object
-            List<Closure> closures = new ArrayList<>();
-            closures.add(closureUtil.getClosure((Node) value, SolrDocUtil.EQUIVALENT_EDGES));
-            docUtil.addClosure("object_eq", ClosureUtil.collectIdClosure(closures), doc);
+            docUtil.addClosure("object_eq",
+                closureUtil.getClosure((Node) value, SolrDocUtil.EQUIVALENT_EDGES).getCuries(), doc);
 
             if (query.getObjectClosure() != null) {
-              Set<DirectedRelationshipType> rels = resolveRelationships("object_closure", query.getObjectClosure());
-              closureTypes.clear();
-              closureTypes.addAll(rels);
+              closureTypes = getClosureTypes(query, "object_closure", query.getObjectClosure());
             }
           }
           if ("relation".equals(key) && query.getRelationClosure() != null) {
-            Set<DirectedRelationshipType> rels = resolveRelationships("relation_closure", query.getRelationClosure());
-            closureTypes.clear();
-            closureTypes.addAll(rels);
+            closureTypes = getClosureTypes(query, "relation_closure", query.getRelationClosure());
           }
           if ("evidence".equals(key) && query.getEvidenceClosure() != null) {
-            Set<DirectedRelationshipType> rels = resolveRelationships("evidence_closure", query.getEvidenceClosure());
-            closureTypes.clear();
-            closureTypes.addAll(rels);
+            closureTypes = getClosureTypes(query, "evidence_closure", query.getEvidenceClosure());
           }
           docUtil.addNodes(key, singleton((Node) value), closureTypes, doc);
         }
@@ -7,12 +7,26 @@ import javax.inject.Singleton;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.google.inject.name.Names;
 
 class GolrLoaderModule extends AbstractModule {
 
+  private final long closureCacheSize;
+
+  GolrLoaderModule() {
+    this(ClosureUtil.DEFAULT_CLOSURE_CACHE_SIZE);
+  }
+
+  GolrLoaderModule(long closureCacheSize) {
+    this.closureCacheSize = closureCacheSize;
+  }
+
   @Override
   protected void configure() {
     bind(Graph.class).to(GraphTransactionalImpl.class).in(Singleton.class);
+    bindConstant().annotatedWith(Names.named(ClosureUtil.CLOSURE_CACHE_SIZE)).to(closureCacheSize);
+    // One closure cache shared by every loader and worker thread
+    bind(ClosureUtil.class).in(Singleton.class);
   }
 
 }
@@ -4,36 +4,46 @@ import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
-import org.apache.solr.client.solrj.SolrClient;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.monarch.golr.beans.GolrCypherQuery;
+import org.monarch.golr.beans.QueryRun;
 
-public class GolrWorker implements Callable<Boolean> {
+public class GolrWorker implements Callable<QueryRun> {
 
   private static final Logger logger = Logger.getLogger(GolrWorker.class.getName());
 
-  String solrServer;
+  SolrIndexer indexer;
   GolrLoader loader;
   GolrCypherQuery query;
-  Object solrLock;
   Optional<String> queryName;
+  int partition;
 
-  public GolrWorker(String solrServer, GolrLoader loader,
-      GolrCypherQuery query, Object solrLock, Optional<String> queryName) {
-    this.solrServer = solrServer;
+  public GolrWorker(SolrIndexer indexer, GolrLoader loader,
+      GolrCypherQuery query, Optional<String> queryName) {
+    this(indexer, loader, query, queryName, 0);
+  }
+
+  public GolrWorker(SolrIndexer indexer, GolrLoader loader,
+      GolrCypherQuery query, Optional<String> queryName, int partition) {
+    this.indexer = indexer;
     this.loader = loader;
     this.query = query;
-    this.solrLock = solrLock;
+    this.partition = partition;
     this.queryName = queryName;
     Thread.currentThread().setName("Golr processor - " + queryName.get());
   }
   
+  String getTaskName() {
+    return GolrLoader.getTaskName(queryName.get(), partition, query.getPartitions());
+  }
+
   @Override
-  public Boolean call() throws Exception {
-    logger.info("Processing: " + queryName.get());
-    long recordCount = loader.process(query, solrServer, solrLock, queryName);
-    logger.info("Wrote " + recordCount + " documents to: " + solrServer);
-    logger.info(queryName.get() + " finished");
-    return true;
+  public QueryRun call() throws Exception {
+    logger.info("Processing: " + getTaskName());
+    QueryRun run = new QueryRun(getTaskName());
+    loader.process(query, indexer, queryName, partition, run);
+    logger.info("Queued " + run.getDocs() + " documents from " + run.getRows() + " rows for: "
+        + indexer);
+    logger.info(getTaskName() + " finished");
+    return run;
   }
 }
@@ -0,0 +1,235 @@
+package org.monarch.golr;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.logging.Logger;
+
+/***
+ * Per node lookups of the loader (taxon, gene, chromosome, orthologs, diseases, phenotypes) keyed
+ * by primitive node id. Nothing is evicted: entries are two longs in an open addressing table, and
+ * multi-valued results are packed into one shared long array, so the whole graph fits where a
+ * bounded cache of {@code Node} keys kept thrashing.
+ *
+ * <p>The table is split into segments with their own lock. Values are computed outside the lock,
+ * so two threads missing the same node may both compute it; the first result is kept and
+ * returned to both.
+ */
+class NodeAttributeCache {
+
+  private static final Logger logger = Logger.getLogger(NodeAttributeCache.class.getName());
+
+  /***
+   * The cached value of a node without a result.
+   */
+  static final long NONE = -1;
+
+  private static final long MISSING = Long.MIN_VALUE;
+  private static final int SEGMENT_BITS = 4;
+  private static final int MIN_SEGMENT_CAPACITY = 16;
+  private static final int LENGTH_BITS = 20;
+  private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+  private final String name;
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /***
+   * @param expectedSize the number of nodes expected to be looked up, used to size the table
+   */
+  NodeAttributeCache(String name, long expectedSize) {
+    this.name = name;
+    int segmentCapacity = (int) Math.min(1 << 24, Math.max(MIN_SEGMENT_CAPACITY,
+        expectedSize / segments.length));
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(segmentCapacity);
+    }
+  }
+
+  private static long mix(long nodeId) {
+    return nodeId * 0x9E3779B97F4A7C15L;
+  }
+
+  private Segment segment(long hash) {
+    return segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+  }
+
+  /***
+   * @param loader computes the value id of a node, or {@link #NONE}
+   * @return the value id of the node, or {@link #NONE}
+   */
+  long get(long nodeId, LongUnaryOperator loader) {
+    long hash = mix(nodeId);
+    Segment segment = segment(hash);
+    long value = segment.get(nodeId, hash);
+    if (MISSING != value) {
+      hits.increment();
+      return value;
+    }
+    misses.increment();
+    return segment.put(nodeId, hash, loader.applyAsLong(nodeId));
+  }
+
+  /***
+   * @param loader computes the value ids of a node
+   * @return a copy of the value ids of the node
+   */
+  long[] getAll(long nodeId, LongFunction<long[]> loader) {
+    long hash = mix(nodeId);
+    Segment segment = segment(hash);
+    long[] values = segment.getAll(nodeId, hash);
+    if (null != values) {
+      hits.increment();
+      return values;
+    }
+    misses.increment();
+    return segment.putAll(nodeId, hash, loader.apply(nodeId));
+  }
+
+  long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /***
+   * @return the bytes held by the tables and value pools
+   */
+  long getFootprint() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.footprint();
+    }
+    return bytes;
+  }
+
+  long getHitCount() {
+    return hits.sum();
+  }
+
+  long getMissCount() {
+    return misses.sum();
+  }
+
+  /***
+   * Logs the cumulative hit and miss counts and the memory held.
+   */
+  void logStats(String context) {
+    long hitCount = hits.sum();
+    long requests = hitCount + misses.sum();
+    logger.info(String.format(
+        "%s - %s cache: size=%d, hits=%d, misses=%d, hit rate=%.3f, footprint=%.1f MB",
+        context, name, size(), hitCount, requests - hitCount,
+        0 == requests ? 1.0 : (double) hitCount / requests, getFootprint() / (1024.0 * 1024)));
+  }
+
+  /***
+   * An open addressing table from node id to value, or to an offset and length into the pool.
+   */
+  private static final class Segment {
+
+    // node id + 1, 0 for a free slot
+    private long[] keys;
+    private long[] values;
+    private int size = 0;
+    private long[] pool = new long[0];
+    private int poolSize = 0;
+
+    Segment(int capacity) {
+      // A load factor of 3/4 keeps linear probes short
+      int tableSize = Integer.highestOneBit(capacity + capacity / 3) << 1;
+      keys = new long[tableSize];
+      values = new long[tableSize];
+    }
+
+    private int find(long nodeId, long hash) {
+      int mask = keys.length - 1;
+      int slot = (int) (hash >>> 32) & mask;
+      while (0 != keys[slot] && nodeId + 1 != keys[slot]) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    synchronized long get(long nodeId, long hash) {
+      int slot = find(nodeId, hash);
+      return 0 == keys[slot] ? MISSING : values[slot];
+    }
+
+    synchronized long[] getAll(long nodeId, long hash) {
+      int slot = find(nodeId, hash);
+      if (0 == keys[slot]) {
+        return null;
+      }
+      int offset = (int) (values[slot] >>> LENGTH_BITS);
+      int length = (int) (values[slot] & LENGTH_MASK);
+      return Arrays.copyOfRange(pool, offset, offset + length);
+    }
+
+    /***
+     * @return the value stored for the node, the one of another thread if it was first
+     */
+    synchronized long put(long nodeId, long hash, long value) {
+      int slot = find(nodeId, hash);
+      if (0 != keys[slot]) {
+        return values[slot];
+      }
+      keys[slot] = nodeId + 1;
+      values[slot] = value;
+      if (++size > keys.length - keys.length / 4) {
+        rehash();
+      }
+      return value;
+    }
+
+    /***
+     * @return the values stored for the node, the ones of another thread if it was first
+     */
+    synchronized long[] putAll(long nodeId, long hash, long[] ids) {
+      long[] stored = getAll(nodeId, hash);
+      if (null != stored) {
+        return stored;
+      }
+      checkState(ids.length <= LENGTH_MASK, "%s values for node %s, at most %s can be cached",
+          ids.length, nodeId, LENGTH_MASK);
+      int length = ids.length;
+      if (poolSize + length > pool.length) {
+        pool = Arrays.copyOf(pool, Math.max(poolSize + length, Math.max(64, pool.length * 2)));
+      }
+      System.arraycopy(ids, 0, pool, poolSize, length);
+      put(nodeId, hash, ((long) poolSize << LENGTH_BITS) | length);
+      poolSize += length;
+      return ids;
+    }
+
+    private void rehash() {
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new long[oldValues.length * 2];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (0 != oldKeys[i]) {
+          int slot = find(oldKeys[i] - 1, mix(oldKeys[i] - 1));
+          keys[slot] = oldKeys[i];
+          values[slot] = oldValues[i];
+        }
+      }
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    synchronized long footprint() {
+      return (keys.length + values.length + (long) pool.length) * Long.BYTES;
+    }
+
+  }
+
+}
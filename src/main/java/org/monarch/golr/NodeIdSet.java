@@ -0,0 +1,125 @@
+package org.monarch.golr;
+
+import java.util.Arrays;
+
+/***
+ * A set of node ids as a paged bitmap. Pages of {@code 2^PAGE_BITS} bits are only allocated
+ * for the ranges of ids that are set, and are found through an open addressing table keyed by
+ * the high bits of the id, so any long id can be added and memory follows the ids actually set
+ * rather than the highest one.
+ *
+ * <p>Not thread safe while it is filled; once filled, it can be read from any thread it is
+ * safely published to.
+ */
+class NodeIdSet {
+
+  private static final int PAGE_BITS = 16;
+  private static final int PAGE_WORDS = (1 << PAGE_BITS) / Long.SIZE;
+  private static final long PAGE_MASK = (1L << PAGE_BITS) - 1;
+
+  private long[] pageKeys = new long[16];
+  private long[][] pages = new long[16][];
+  private int pageCount = 0;
+  private long size = 0;
+
+  private static int hash(long pageKey) {
+    long hash = pageKey * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  private long[] getPage(long pageKey) {
+    int mask = pages.length - 1;
+    for (int slot = hash(pageKey) & mask; null != pages[slot]; slot = (slot + 1) & mask) {
+      if (pageKeys[slot] == pageKey) {
+        return pages[slot];
+      }
+    }
+    return null;
+  }
+
+  private long[] getOrCreatePage(long pageKey) {
+    int mask = pages.length - 1;
+    int slot = hash(pageKey) & mask;
+    for (; null != pages[slot]; slot = (slot + 1) & mask) {
+      if (pageKeys[slot] == pageKey) {
+        return pages[slot];
+      }
+    }
+    long[] page = new long[PAGE_WORDS];
+    pageKeys[slot] = pageKey;
+    pages[slot] = page;
+    if (++pageCount * 2 > pages.length) {
+      rehash();
+    }
+    return page;
+  }
+
+  private void rehash() {
+    long[] oldKeys = pageKeys;
+    long[][] oldPages = pages;
+    pageKeys = new long[oldKeys.length * 2];
+    pages = new long[oldPages.length * 2][];
+    int mask = pages.length - 1;
+    for (int i = 0; i < oldPages.length; i++) {
+      if (null != oldPages[i]) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (null != pages[slot]) {
+          slot = (slot + 1) & mask;
+        }
+        pageKeys[slot] = oldKeys[i];
+        pages[slot] = oldPages[i];
+      }
+    }
+  }
+
+  void add(long nodeId) {
+    long[] page = getOrCreatePage(nodeId >>> PAGE_BITS);
+    int bit = (int) (nodeId & PAGE_MASK);
+    long word = page[bit >>> 6];
+    long updated = word | (1L << bit);
+    if (updated != word) {
+      page[bit >>> 6] = updated;
+      size++;
+    }
+  }
+
+  boolean contains(long nodeId) {
+    long[] page = getPage(nodeId >>> PAGE_BITS);
+    if (null == page) {
+      return false;
+    }
+    int bit = (int) (nodeId & PAGE_MASK);
+    return 0 != (page[bit >>> 6] & (1L << bit));
+  }
+
+  long size() {
+    return size;
+  }
+
+  /***
+   * @return the ids in ascending order
+   */
+  long[] toArray() {
+    long[] keys = new long[pageCount];
+    int count = 0;
+    for (int i = 0; i < pages.length; i++) {
+      if (null != pages[i]) {
+        keys[count++] = pageKeys[i];
+      }
+    }
+    // Page keys are ids shifted right, never negative
+    Arrays.sort(keys);
+    long[] ids = new long[Math.toIntExact(size)];
+    int index = 0;
+    for (long key : keys) {
+      long[] page = getPage(key);
+      for (int w = 0; w < PAGE_WORDS; w++) {
+        for (long word = page[w]; 0 != word; word &= word - 1) {
+          ids[index++] = (key << PAGE_BITS) | (w << 6) | Long.numberOfTrailingZeros(word);
+        }
+      }
+    }
+    return ids;
+  }
+
+}
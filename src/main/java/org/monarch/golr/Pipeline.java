@@ -1,14 +1,22 @@
 package org.monarch.golr;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -24,22 +32,25 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.monarch.golr.beans.GolrCypherQuery;
+import org.monarch.golr.beans.QueryRun;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.prefixcommons.CurieUtil;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.google.common.base.Stopwatch;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
 import io.scigraph.internal.EvidenceAspect;
 import io.scigraph.internal.GraphAspect;
+import io.scigraph.neo4j.Graph;
 import io.scigraph.neo4j.Neo4jConfiguration;
 import io.scigraph.neo4j.Neo4jModule;
 
@@ -49,11 +60,6 @@ public class Pipeline {
 
   private static ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
 
-  // Or alternatively Runtime.getRuntime().availableProcessors()
-  private static final int N_THREADS = 7;
-
-  private static final Object SOLR_LOCK = new Object();
-
   static {
     mapper.registerModules(new GuavaModule());
   }
@@ -69,6 +75,59 @@ public class Pipeline {
     option = Option.builder("s").longOpt("solr-server").required().hasArg()
         .desc("The Solr server to update").build();
     options.addOption(option);
+    option = Option.builder().longOpt("closure-cache-size").hasArg()
+        .desc("Maximum number of closures cached per relationship type set (default "
+            + ClosureUtil.DEFAULT_CLOSURE_CACHE_SIZE + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("closure-index").hasArg()
+        .desc("A memory mapped closure index file, built if missing or out of date").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("solr-connections").hasArg()
+        .desc("Number of parallel connections sending batches to Solr (default "
+            + SolrIndexer.DEFAULT_CONNECTIONS + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("solr-queue-size").hasArg()
+        .desc("Number of batches queued for Solr before workers block (default "
+            + SolrIndexer.DEFAULT_QUEUE_SIZE + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("solr-batch-size").hasArg()
+        .desc("Number of documents sent to Solr per update request (default "
+            + SolrIndexer.DEFAULT_BATCH_SIZE + ")").build();
+    options.addOption(option);
+    addCommitOptions(options);
+    option = Option.builder("t").longOpt("threads").hasArg()
+        .desc("Number of queries processed in parallel (default: available processors)").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("warm-up")
+        .desc("Compute the taxon, gene and chromosome of every gene, sequence feature and "
+            + "genotype in parallel before the queries start").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("stats").hasArg()
+        .desc("File recording query durations, used to start the longest queries first").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("changed").hasArg()
+        .desc("Reload incrementally: a file of changed node IRIs, one per line. "
+            + "All queries must be run").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("previous-graph").hasArg()
+        .desc("Reload incrementally: the Neo4j store of the previously loaded graph, "
+            + "diffed against the current one. All queries must be run").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("checkpoint").hasArg()
+        .desc("File recording the progress of each query, used to resume a failed load. "
+            + "Removed once the load is committed").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("document-ids").hasArg()
+        .desc("Directory recording the document ids of every query, used to delete the "
+            + "documents a query no longer produces").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("manifest").hasArg()
+        .desc("File recording the status, counts and duration of each query").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("resume")
+        .desc("Continue the load recorded in the manifest, re-running only the queries "
+            + "that failed or did not finish").build();
+    options.addOption(option);
     return options;
   }
 
@@ -81,18 +140,71 @@ public class Pipeline {
     Neo4jConfiguration neo4jConfig = null;
     File filePath = null;
     String solrServer = null;
+    long closureCacheSize = ClosureUtil.DEFAULT_CLOSURE_CACHE_SIZE;
+    Optional<String> closureIndex = Optional.empty();
+    int solrConnections = SolrIndexer.DEFAULT_CONNECTIONS;
+    int solrQueueSize = SolrIndexer.DEFAULT_QUEUE_SIZE;
+    int solrBatchSize = SolrIndexer.DEFAULT_BATCH_SIZE;
+    CommitPolicy commitPolicy = CommitPolicy.finalCommit();
+    int threads = Runtime.getRuntime().availableProcessors();
+    Optional<File> statsFile = Optional.empty();
+    Optional<File> changedFile = Optional.empty();
+    Optional<File> previousGraph = Optional.empty();
+    Optional<File> checkpointFile = Optional.empty();
+    Optional<File> documentIdsDirectory = Optional.empty();
+    Optional<File> manifestFile = Optional.empty();
+    boolean resume = false;
+    boolean warmUp = false;
     try {
       cmd = parser.parse(options, args);
       solrServer = cmd.getOptionValue("s");
+      if (cmd.hasOption("closure-cache-size")) {
+        closureCacheSize = Long.parseLong(cmd.getOptionValue("closure-cache-size"));
+      }
+      closureIndex = Optional.ofNullable(cmd.getOptionValue("closure-index"));
+      if (cmd.hasOption("solr-connections")) {
+        solrConnections = Integer.parseInt(cmd.getOptionValue("solr-connections"));
+      }
+      if (cmd.hasOption("solr-queue-size")) {
+        solrQueueSize = Integer.parseInt(cmd.getOptionValue("solr-queue-size"));
+      }
+      if (cmd.hasOption("solr-batch-size")) {
+        solrBatchSize = Integer.parseInt(cmd.getOptionValue("solr-batch-size"));
+      }
+      commitPolicy = getCommitPolicy(cmd);
+      if (cmd.hasOption("t")) {
+        threads = Integer.parseInt(cmd.getOptionValue("t"));
+      }
+      warmUp = cmd.hasOption("warm-up");
+      if (cmd.hasOption("stats")) {
+        statsFile = Optional.of(new File(cmd.getOptionValue("stats")));
+      }
+      if (cmd.hasOption("changed")) {
+        changedFile = Optional.of(new File(cmd.getOptionValue("changed")));
+      }
+      if (cmd.hasOption("previous-graph")) {
+        previousGraph = Optional.of(new File(cmd.getOptionValue("previous-graph")));
+      }
+      if (cmd.hasOption("checkpoint")) {
+        checkpointFile = Optional.of(new File(cmd.getOptionValue("checkpoint")));
+      }
+      if (cmd.hasOption("document-ids")) {
+        documentIdsDirectory = Optional.of(new File(cmd.getOptionValue("document-ids")));
+      }
+      if (cmd.hasOption("manifest")) {
+        manifestFile = Optional.of(new File(cmd.getOptionValue("manifest")));
+      }
+      resume = cmd.hasOption("resume");
+      checkArgument(!resume || manifestFile.isPresent(), "--resume requires --manifest");
       neo4jConfig = mapper.readValue(new File(cmd.getOptionValue("g")), Neo4jConfiguration.class);
       filePath = new File(cmd.getOptionValue("q"));
-    } catch (ParseException e) {
+    } catch (ParseException | IllegalArgumentException e) {
       e.printStackTrace();
       new HelpFormatter().printHelp("GolrLoad", options);
       System.exit(-1);
     }
 
-    Injector i = Guice.createInjector(new GolrLoaderModule(), new Neo4jModule(neo4jConfig),
+    Injector i = Guice.createInjector(new GolrLoaderModule(closureCacheSize), new Neo4jModule(neo4jConfig),
           new AbstractModule() {
             @Override
             protected void configure() {
@@ -101,7 +213,40 @@ public class Pipeline {
             
           });
 
+    if (closureIndex.isPresent()) {
+      ClosureUtil closureUtil = i.getInstance(ClosureUtil.class);
+      closureUtil.setIndex(ClosureIndex.openOrBuild(Paths.get(closureIndex.get()),
+          i.getInstance(GraphDatabaseService.class), closureUtil));
+    }
+
     GolrLoader loader = i.getInstance(GolrLoader.class);
+    if (warmUp) {
+      loader.warmUp(threads);
+    }
+
+    Checkpoints checkpoints = checkpointFile.isPresent()
+        ? Checkpoints.load(checkpointFile.get()) : Checkpoints.disabled();
+    loader.setCheckpoints(checkpoints);
+    DocumentIdLog documentIds = documentIdsDirectory.isPresent()
+        ? DocumentIdLog.open(documentIdsDirectory.get()) : DocumentIdLog.disabled();
+    loader.setDocumentIds(documentIds);
+    RunManifest manifest = manifestFile.isPresent()
+        ? RunManifest.open(manifestFile.get(), resume) : RunManifest.disabled();
+
+    Optional<ChangeSet> changeSet = Optional.empty();
+    if (changedFile.isPresent() || previousGraph.isPresent()) {
+      GraphDatabaseService graphDb = i.getInstance(GraphDatabaseService.class);
+      Set<String> changedIris = new HashSet<>();
+      if (changedFile.isPresent()) {
+        changedIris.addAll(ChangeSet.readIris(changedFile.get()));
+      }
+      if (previousGraph.isPresent()) {
+        changedIris.addAll(ChangeSet.diff(previousGraph.get(), graphDb));
+      }
+      changeSet = Optional.of(ChangeSet.create(graphDb, i.getInstance(Graph.class), changedIris,
+          loader.getFeatureFieldTypes()));
+      loader.setChangeSet(changeSet.get());
+    }
 
     ArrayList<File> files = new ArrayList<>();
 
@@ -114,33 +259,160 @@ public class Pipeline {
       }
     }
 
-    final ExecutorService pool = Executors.newFixedThreadPool(N_THREADS);
-    List<Future<Boolean>> futures = new ArrayList<>();
-
-    for (final File fileEntry : files) {
+    // Invalid queries are rejected before anything is deleted or queued
+    Map<File, GolrCypherQuery> queries = new LinkedHashMap<>();
+    for (File fileEntry : files) {
       GolrCypherQuery query = mapper.readValue(fileEntry, GolrCypherQuery.class);
-      Optional<String> queryName = Optional.of(fileEntry.getName());
+      GolrLoader.checkPartitions(query);
+      queries.put(fileEntry, query);
+    }
+
+    QueryStats stats = statsFile.isPresent() ? QueryStats.load(statsFile.get()) : new QueryStats();
+    List<QueryRun> runs = new ArrayList<>();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    // Idle threads take the next task from the shared queue, so submitting the longest
+    // tasks first keeps the slowest query from starting last
+    final ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<QueryRun>> futures = new ArrayList<>();
+
+    try (SolrIndexer indexer = new SolrIndexer(solrServer, solrConnections, solrQueueSize,
+        solrBatchSize, commitPolicy)) {
+      // Workers stop before the indexer they write to is closed, also when this run fails
+      try {
+        if (changeSet.isPresent() && checkpoints.isEmpty() && !manifest.isResumed()) {
+          // Stale documents go before anything is queued, affected ones are emitted again below.
+          // A resumed load already deleted them before it queued its first task
+          CurieUtil curieUtil = i.getInstance(CurieUtil.class);
+          for (String deleteQuery : changeSet.get().getDeleteQueries(curieUtil)) {
+            indexer.deleteByQuery(deleteQuery);
+          }
+        }
+        List<GolrWorker> workers = new ArrayList<>();
+        for (Map.Entry<File, GolrCypherQuery> entry : queries.entrySet()) {
+          GolrCypherQuery query = entry.getValue();
+          Optional<String> queryName = Optional.of(entry.getKey().getName());
+
+          // Each partition of a large query runs as its own task
+          for (int partition = 0; partition < query.getPartitions(); partition++) {
+            GolrWorker worker = new GolrWorker(indexer, loader, query, queryName, partition);
+            if (manifest.isComplete(worker.getTaskName())) {
+              logger.info("Skipping " + worker.getTaskName() + ", completed by a previous run");
+            } else {
+              workers.add(worker);
+            }
+          }
+        }
+
+        workers = stats.longestFirst(workers, GolrWorker::getTaskName);
+        for (GolrWorker worker : workers) {
+          manifest.pending(worker.getTaskName());
+          futures.add(pool.submit(worker));
+        }
+
+        // A failed task is recorded and the others carry on
+        for (int task = 0; task < futures.size(); task++) {
+          try {
+            QueryRun run = futures.get(task).get();
+            runs.add(run);
+            manifest.complete(run);
+            // Tasks skipped from a checkpoint did not run and would look instant
+            if (run.getMillis() > 0) {
+              stats.record(run);
+            }
+          } catch (ExecutionException e) {
+            String taskName = workers.get(task).getTaskName();
+            logger.log(Level.SEVERE, taskName + " failed", e.getCause());
+            manifest.fail(taskName, e.getCause());
+          }
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.DAYS);
+
+        // Only a query whose every task completed knows all the documents it produces
+        Set<String> failedTasks = new HashSet<>(manifest.getFailed());
+        for (Map.Entry<File, GolrCypherQuery> entry : queries.entrySet()) {
+          List<String> tasks = new ArrayList<>();
+          for (int partition = 0; partition < entry.getValue().getPartitions(); partition++) {
+            tasks.add(GolrLoader.getTaskName(entry.getKey().getName(), partition,
+                entry.getValue().getPartitions()));
+          }
+          if (Collections.disjoint(tasks, failedTasks)) {
+            documentIds.deleteStale(entry.getKey().getName(), tasks, indexer);
+          }
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+    } catch (IOException e) {
+      // Nothing of this run is known to be committed
+      for (QueryRun run : runs) {
+        manifest.fail(run.getName(), e);
+      }
+      throw e;
+    }
 
-      final Future<Boolean> contentFuture = pool.submit(new GolrWorker(solrServer,
-            loader, query, SOLR_LOCK, queryName));
-      futures.add(contentFuture);
+    documentIds.promote();
+    QueryStats.logSummary(runs, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    if (statsFile.isPresent()) {
+      stats.save(statsFile.get());
     }
 
-    for (Future<Boolean> future : futures) {
-      future.get();
+    List<String> failed = manifest.getFailed();
+    if (!failed.isEmpty()) {
+      // Checkpoints are kept for the failed queries to resume from
+      logger.severe("Golr load committed with " + failed.size() + " failed queries: " + failed);
+      System.exit(1);
     }
-    pool.shutdown();
-    pool.awaitTermination(10, TimeUnit.DAYS);
-    
+    checkpoints.delete();
     logger.info("Golr load completed");
-    /*
-    We can do this with curl
-    logger.info("Optimizing solr");
-    SolrClient solrClient = new HttpSolrClient.Builder(solrServer).build();
-    solrClient.optimize();
-    solrClient.close();
-    logger.info("Optimization complete");
-    */
-    
+  }
+
+  /***
+   * Adds the options read by {@link #getCommitPolicy(CommandLine)}.
+   */
+  static void addCommitOptions(Options options) {
+    Option option = Option.builder().longOpt("commit").hasArg()
+        .desc("Commit policy: final (default), within or soft").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("commit-within").hasArg()
+        .desc("commitWithin in ms for the within policy (default "
+            + CommitPolicy.DEFAULT_COMMIT_WITHIN_MS + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("soft-commit-docs").hasArg()
+        .desc("Documents between soft commits for the soft policy, 0 to disable (default "
+            + CommitPolicy.DEFAULT_SOFT_COMMIT_DOCS + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("soft-commit-seconds").hasArg()
+        .desc("Seconds between soft commits for the soft policy, 0 to disable (default "
+            + CommitPolicy.DEFAULT_SOFT_COMMIT_SECONDS + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("optimize")
+        .desc("Optimize the index after the final commit").build();
+    options.addOption(option);
+  }
+
+  static CommitPolicy getCommitPolicy(CommandLine cmd) {
+    String mode = cmd.getOptionValue("commit", "final");
+    CommitPolicy policy;
+    switch (mode) {
+      case "final":
+        policy = CommitPolicy.finalCommit();
+        break;
+      case "within":
+        policy = CommitPolicy.commitWithin(Integer.parseInt(cmd.getOptionValue("commit-within",
+            Integer.toString(CommitPolicy.DEFAULT_COMMIT_WITHIN_MS))));
+        break;
+      case "soft":
+        policy = CommitPolicy.softCommitEvery(
+            Long.parseLong(cmd.getOptionValue("soft-commit-docs",
+                Long.toString(CommitPolicy.DEFAULT_SOFT_COMMIT_DOCS))),
+            Long.parseLong(cmd.getOptionValue("soft-commit-seconds",
+                Long.toString(CommitPolicy.DEFAULT_SOFT_COMMIT_SECONDS))));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown commit policy: " + mode);
+    }
+    return policy.withOptimize(cmd.hasOption("optimize"));
   }
 }
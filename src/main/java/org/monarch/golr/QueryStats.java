@@ -0,0 +1,92 @@
+package org.monarch.golr;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import org.monarch.golr.beans.QueryRun;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/***
+ * Durations and row counts of previous query runs, persisted between loads so that the
+ * longest queries can be started first.
+ */
+class QueryStats {
+
+  private static final Logger logger = Logger.getLogger(QueryStats.class.getName());
+
+  private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+
+  private final Map<String, QueryRun> runs;
+
+  QueryStats() {
+    this(new TreeMap<>());
+  }
+
+  private QueryStats(Map<String, QueryRun> runs) {
+    this.runs = runs;
+  }
+
+  static QueryStats load(File file) throws IOException {
+    if (!file.exists()) {
+      return new QueryStats();
+    }
+    Map<String, QueryRun> runs =
+        mapper.readValue(file, new TypeReference<TreeMap<String, QueryRun>>() {});
+    runs.forEach((name, run) -> run.setName(name));
+    return new QueryStats(runs);
+  }
+
+  void save(File file) throws IOException {
+    mapper.writeValue(file, runs);
+  }
+
+  void record(QueryRun run) {
+    runs.put(run.getName(), run);
+  }
+
+  /***
+   * @return the duration of the last run, or Long.MAX_VALUE for queries not run before so that
+   *         they are not started last
+   */
+  long getExpectedMillis(String name) {
+    QueryRun run = runs.get(name);
+    return null == run ? Long.MAX_VALUE : run.getMillis();
+  }
+
+  /***
+   * Orders tasks longest first. The sort is stable, so tasks without history keep their order.
+   */
+  <T> List<T> longestFirst(Collection<T> tasks, Function<T, String> name) {
+    List<T> ordered = new ArrayList<>(tasks);
+    ordered.sort(Comparator.comparingLong((T task) -> getExpectedMillis(name.apply(task)))
+        .reversed());
+    return ordered;
+  }
+
+  static void logSummary(Collection<QueryRun> runs, long makespanMillis) {
+    StringBuilder summary = new StringBuilder("Query summary\n");
+    summary.append(String.format("%-50s %10s %12s %12s %10s %10s%n", "query", "seconds", "rows",
+        "docs", "rows/s", "docs/s"));
+    List<QueryRun> ordered = new ArrayList<>(runs);
+    ordered.sort(Comparator.comparingLong(QueryRun::getMillis).reversed());
+    for (QueryRun run : ordered) {
+      summary.append(String.format("%-50s %10.1f %12d %12d %10.0f %10.0f%n", run.getName(),
+          run.getMillis() / 1000.0, run.getRows(), run.getDocs(), run.getRowsPerSecond(),
+          run.getDocsPerSecond()));
+    }
+    summary.append(String.format("Makespan: %.1f seconds", makespanMillis / 1000.0));
+    logger.info(summary.toString());
+  }
+
+}
@@ -6,7 +6,6 @@ import io.scigraph.neo4j.DirectedRelationshipType;
 import io.scigraph.owlapi.OwlRelationships;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -18,7 +17,6 @@ import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.assistedinject.Assisted;
 
@@ -49,7 +47,7 @@ class ResultSerializer {
   static final Collection<DirectedRelationshipType> DEFAULT_CLOSURE_TYPES =
       ImmutableSet.of(EQUIVALENT_CLASS, SUBCLASS, TYPE, SAME_AS, SUBPROPERTY);
 
-  private final ObjectMapper mapper = new ObjectMapper();
+  private final ClosureMap closureMap = new ClosureMap();
   private final JsonGenerator generator;
   private final ClosureUtil closureUtil;
 
@@ -135,9 +133,7 @@ class ResultSerializer {
         ClosureUtil.collectIdClosure(closures));
     writeArray(baseName + LABEL_CLOSURE_SUFFIX,
         ClosureUtil.collectLabelClosure(closures));
-    StringWriter writer = new StringWriter();
-    mapper.writeValue(writer, ClosureUtil.collectClosureMap(closures));
-    generator.writeStringField(baseName + CLOSURE_MAP_SUFFIX, writer.toString());
+    generator.writeStringField(baseName + CLOSURE_MAP_SUFFIX, closureMap.toJson(closures));
     
   }
 
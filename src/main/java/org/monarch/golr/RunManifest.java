@@ -0,0 +1,115 @@
+package org.monarch.golr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import org.monarch.golr.beans.QueryRun;
+import org.monarch.golr.beans.QueryRun.Status;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/***
+ * The status, counts and duration of every query (or query partition) of a load, saved as
+ * tasks finish so that a resumed load only runs what did not complete.
+ */
+class RunManifest {
+
+  private static final Logger logger = Logger.getLogger(RunManifest.class.getName());
+
+  private static final ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+
+  private final Optional<File> file;
+  private final Map<String, QueryRun> runs;
+  private final boolean resumed;
+
+  private RunManifest(Optional<File> file, Map<String, QueryRun> runs) {
+    this.file = file;
+    this.runs = runs;
+    this.resumed = !runs.isEmpty();
+  }
+
+  static RunManifest disabled() {
+    return new RunManifest(Optional.empty(), new TreeMap<>());
+  }
+
+  /***
+   * @param resume continue the load recorded in the file instead of starting a new one
+   */
+  static RunManifest open(File file, boolean resume) throws IOException {
+    Map<String, QueryRun> runs = new TreeMap<>();
+    if (resume && file.exists()) {
+      runs = mapper.readValue(file, new TypeReference<TreeMap<String, QueryRun>>() {});
+      runs.forEach((name, run) -> run.setName(name));
+      logger.info("Resuming load recorded in " + file);
+    }
+    return new RunManifest(Optional.of(file), runs);
+  }
+
+  /***
+   * @return true when continuing a load that already changed the index
+   */
+  boolean isResumed() {
+    return resumed;
+  }
+
+  synchronized boolean isComplete(String task) {
+    QueryRun run = runs.get(task);
+    return null != run && Status.COMPLETE == run.getStatus();
+  }
+
+  synchronized void pending(String task) {
+    QueryRun run = new QueryRun(task);
+    run.setStatus(Status.PENDING);
+    update(run);
+  }
+
+  synchronized void complete(QueryRun run) {
+    run.setStatus(Status.COMPLETE);
+    run.setError(null);
+    update(run);
+  }
+
+  synchronized void fail(String task, Throwable cause) {
+    QueryRun run = runs.getOrDefault(task, new QueryRun(task));
+    run.setStatus(Status.FAILED);
+    run.setError(String.valueOf(cause));
+    update(run);
+  }
+
+  synchronized List<String> getFailed() {
+    List<String> failed = new ArrayList<>();
+    runs.forEach((name, run) -> {
+      if (Status.FAILED == run.getStatus()) {
+        failed.add(name);
+      }
+    });
+    return failed;
+  }
+
+  private void update(QueryRun run) {
+    runs.put(run.getName(), run);
+    if (!file.isPresent()) {
+      return;
+    }
+    try {
+      File tmp = new File(file.get().getPath() + ".tmp");
+      mapper.writeValue(tmp, runs);
+      Files.move(tmp.toPath(), file.get().toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to save the run manifest to " + file.get(), e);
+    }
+  }
+
+}
@@ -1,26 +1,44 @@
 package org.monarch.golr;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import javax.inject.Inject;
 
+import org.apache.solr.common.SolrInputDocument;
 import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.traversal.TraversalDescription;
 import org.prefixcommons.CurieUtil;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Longs;
 
 import io.scigraph.frames.Concept;
 import io.scigraph.frames.NodeProperties;
@@ -33,7 +51,17 @@ import io.scigraph.owlapi.OwlRelationships;
 class SimpleLoader {
 
   private static final Logger logger = Logger.getLogger(SimpleLoader.class.getName());
+
+  static final int CHUNK_SIZE = 1000;
+  private static final RelationshipType inTaxon =
+      RelationshipType.withName("http://purl.obolibrary.org/obo/RO_0002162");
+
   private final Label cliqueLeaderLabel = Label.label("cliqueLeader");
+  private final Label phenotypeLabel = Label.label("phenotype");
+  private final RelationshipType hasPhenotype =
+      RelationshipType.withName("http://purl.obolibrary.org/obo/RO_0002200");
+
+  private NodeIdSet phenotypeConnected = new NodeIdSet();
   private final Set<String> unwantedLabels = Sets.newHashSet("cliqueLeader",
                                                              "Node",
                                                              "Class",
@@ -45,7 +73,16 @@ class SimpleLoader {
   CurieUtil curieUtil;
   GraphApi api;
 
-  Set<String> tmp = new HashSet<>();
+  Set<String> tmp = Sets.newConcurrentHashSet();
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final TypeReference<Map<String, Object>> MAP_TYPE =
+      new TypeReference<Map<String, Object>>() {};
+
+  private final TraversalDescription taxonDescription;
+  private final TraversalDescription equivalenceDescription;
 
   @Inject
   public SimpleLoader(GraphDatabaseService graphDb, Graph graph, CypherUtil cypherUtil,
@@ -55,195 +92,378 @@ class SimpleLoader {
     this.cypherUtil = cypherUtil;
     this.curieUtil = curieUtil;
     this.api = api;
+    taxonDescription = graphDb.traversalDescription().depthFirst()
+        .relationships(inTaxon, Direction.OUTGOING);
+    equivalenceDescription = graphDb.traversalDescription().breadthFirst()
+        .relationships(OwlRelationships.OWL_SAME_AS)
+        .relationships(OwlRelationships.OWL_EQUIVALENT_CLASS);
   }
 
-  private static final RelationshipType inTaxon =
-      RelationshipType.withName("http://purl.obolibrary.org/obo/RO_0002162");
-
-  // add leaf node or not
+  /***
+   * Generates the search documents on a single thread, in cliqueLeader order.
+   */
   public void generate(Writer writer,
                        Map<String, List<String>> eqCurieMap) throws IOException {
+    generate(writer, eqCurieMap, 1, true);
+  }
 
-    JsonGenerator generator = new JsonFactory().createGenerator(writer);
+  /***
+   * Generates the search documents of all cliqueLeader nodes.
+   *
+   * <p>The cliqueLeader ids are split into chunks of {@value #CHUNK_SIZE} that worker threads
+   * process in their own read transactions. Chunks are written in id order, or as soon as they
+   * are done when {@code ordered} is false. At most two chunks per thread are held in memory.
+   */
+  public void generate(Writer writer, Map<String, List<String>> eqCurieMap, int threads,
+                       boolean ordered) throws IOException {
+    generate(writer, eqCurieMap, threads, ordered, false);
+  }
 
-    generator.writeStartArray();
+  /***
+   * @param ndjson write one document per line instead of a JSON array
+   */
+  public void generate(Writer writer, Map<String, List<String>> eqCurieMap, int threads,
+                       boolean ordered, boolean ndjson) throws IOException {
+    long[] ids = getCliqueLeaderIds();
+    phenotypeConnected = getPhenotypeConnectedIds();
+    logger.info("Generating documents for " + ids.length + " cliqueLeaders on " + threads
+        + " threads");
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CompletionService<List<String>> completed = new ExecutorCompletionService<>(pool);
+    Deque<Future<List<String>>> pending = new ArrayDeque<>();
+    int maxPending = 2 * threads;
+    boolean first = true;
+    String separator = ndjson ? "" : ",";
+
+    if (!ndjson) {
+      writer.write('[');
+    }
+    try {
+      for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+        int start = from;
+        int end = Math.min(ids.length, from + CHUNK_SIZE);
+        Callable<List<String>> chunk = () -> generateChunk(ids, start, end, eqCurieMap);
+        if (pending.size() >= maxPending) {
+          first = writeDocuments(writer, next(pending, completed, ordered), first, separator);
+        }
+        pending.add(ordered ? pool.submit(chunk) : completed.submit(chunk));
+      }
+      while (!pending.isEmpty()) {
+        first = writeDocuments(writer, next(pending, completed, ordered), first, separator);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    if (!ndjson) {
+      writer.write(']');
+    }
+    writer.flush();
+  }
 
+  private long[] getCliqueLeaderIds() {
+    List<Long> ids = new ArrayList<>();
     try (Transaction tx = graphDb.beginTx()) {
-
       // consider only cliqueLeaders
       // https://github.com/SciGraph/golr-loader/issues/41
       ResourceIterator<Node> cliqueLeaderNodes = graphDb.findNodes(cliqueLeaderLabel);
       while (cliqueLeaderNodes.hasNext()) {
-        Node baseNode = cliqueLeaderNodes.next();
-        String iri = GraphUtil.getProperty(baseNode, NodeProperties.IRI, String.class).get();
-        Optional<String> curie = curieUtil.getCurie(iri);
-
-        // Require nodes to have a label, and filter out blank nodes
-        if (!baseNode.hasProperty(NodeProperties.LABEL)
-                || iri.startsWith("_:")
-                || iri.startsWith("https://monarchinitiative.org/.well-known/genid/")) {
-          continue;
-        }
+        ids.add(cliqueLeaderNodes.next().getId());
+      }
+      tx.success();
+    }
+    return Longs.toArray(ids);
+  }
 
-        if (!curie.isPresent()) {
-          logger.info("Cannot resolve IRI to curie");
-          logger.info(iri);
-          continue;
-        }
+  /***
+   * Indexes the search documents of all cliqueLeader nodes directly into Solr.
+   *
+   * <p>Worker threads build a chunk of documents at a time and hand it to the indexer, which
+   * blocks them once its queue is full so that graph reads overlap with indexing. Committing is
+   * left to the indexer's {@link CommitPolicy} when it is closed.
+   *
+   * @return the number of documents sent
+   */
+  public long index(SolrIndexer indexer, Map<String, List<String>> eqCurieMap, int threads)
+      throws IOException {
+    long[] ids = getCliqueLeaderIds();
+    phenotypeConnected = getPhenotypeConnectedIds();
+    logger.info("Indexing documents for " + ids.length + " cliqueLeaders on " + threads
+        + " threads to " + indexer);
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<Integer>> chunks = new ArrayList<>();
+    long count = 0;
+    try {
+      for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+        int start = from;
+        int end = Math.min(ids.length, from + CHUNK_SIZE);
+        chunks.add(pool.submit(() -> {
+          List<SolrInputDocument> docs = generateSolrChunk(ids, start, end, eqCurieMap);
+          int size = docs.size();
+          indexer.index(docs);
+          return size;
+        }));
+      }
+      for (Future<Integer> chunk : chunks) {
+        count += get(chunk);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return count;
+  }
 
-        String[] curieParts;
-        curieParts = curie.get().split(":");
-        if (curieParts.length == 1) {
-          logger.info("Curie does not have reference");
-          logger.info(curie.get());
-          continue;
+  private List<SolrInputDocument> generateSolrChunk(long[] ids, int from, int to,
+      Map<String, List<String>> eqCurieMap) throws IOException {
+    List<SolrInputDocument> docs = new ArrayList<>(to - from);
+    try (Transaction tx = graphDb.beginTx()) {
+      for (int i = from; i < to; i++) {
+        // The generator events are buffered as tokens, so nothing is rendered or parsed as text
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        if (writeNode(graphDb.getNodeById(ids[i]), buffer, eqCurieMap)) {
+          docs.add(toSolrDocument(buffer));
         }
+      }
+      tx.success();
+    }
+    return docs;
+  }
 
-        String prefix = curieParts[0];
-        String reference = curieParts[1];
-        generator.writeStartObject();
-        generator.writeStringField("id", curieUtil.getCurie(iri).orElse(iri));
-        generator.writeStringField("prefix", prefix);
-
-        try{
-          writeOptionalArray("label", generator,
-                  GraphUtil.getProperties(baseNode, NodeProperties.LABEL, String.class));
-        } catch(Exception e) {
-          logger.severe(iri);
-          logger.severe(baseNode.getLabels().toString());
-          logger.severe(GraphUtil.getProperties(baseNode, NodeProperties.LABEL, Double.class).toString());
-          throw e;
-        }
-        writeOptionalArray("definition", generator,
-                GraphUtil.getProperties(baseNode, Concept.DEFINITION, String.class));
-
-        // Abbreviation (need to fix spelling in io.scigraph.frames.Concept
-        writeOptionalArray("abbreviation", generator,
-            GraphUtil.getProperties(baseNode, Concept.ABREVIATION, String.class));
-
-        // Number of edges
-        generator.writeNumberField("edges",
-                getEdgeCount(baseNode.getRelationships()));
-
-        // taxon
-        Optional<Node> taxon = Optional.empty();
-        for (Path path : graphDb.traversalDescription().depthFirst()
-                .relationships(inTaxon, Direction.OUTGOING).traverse(baseNode)) {
-          if (path.length() > 0) {
-            taxon = Optional.of(path.endNode());
-            break;
+  static SolrInputDocument toSolrDocument(TokenBuffer buffer) throws IOException {
+    SolrInputDocument doc = new SolrInputDocument();
+    try (JsonParser parser = buffer.asParser()) {
+      Map<String, Object> fields = mapper.readValue(parser, MAP_TYPE);
+      for (Map.Entry<String, Object> field : fields.entrySet()) {
+        if (field.getValue() instanceof Collection) {
+          for (Object value : (Collection<?>) field.getValue()) {
+            doc.addField(field.getKey(), value);
           }
+        } else {
+          doc.addField(field.getKey(), field.getValue());
         }
+      }
+    }
+    return doc;
+  }
 
-        if (taxon.isPresent()) {
-          String taxonIri =
-                  GraphUtil.getProperty(taxon.get(), NodeProperties.IRI, String.class).get();
-          generator.writeStringField("taxon", curieUtil.getCurie(taxonIri).orElse(taxonIri));
+  private static List<String> next(Deque<Future<List<String>>> pending,
+      CompletionService<List<String>> completed, boolean ordered) throws IOException {
+    if (ordered) {
+      return get(pending.removeFirst());
+    }
+    try {
+      Future<List<String>> future = completed.take();
+      pending.remove(future);
+      return get(future);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating documents");
+    }
+  }
 
-          Collection<String> lbs =
-                  GraphUtil.getProperties(taxon.get(), NodeProperties.LABEL, String.class);
-          String taxonLabel = "";
-          if (lbs.size() >= 1) {
-            taxonLabel = lbs.iterator().next();
-          }
-          // https://github.com/monarch-initiative/dipper/issues/415
-          if (lbs.size() > 1 && !tmp.contains(taxon.get().getProperty("iri").toString())) {
-            tmp.add(taxon.get().getProperty("iri").toString());
-            System.out.println("Multiple taxon labels");
-            System.out.println(taxon.get().getProperty("iri").toString());
-            Iterator<String> it = lbs.iterator();
-            while (it.hasNext()) {
-              System.out.println(it.next());
-            }
-          }
+  private static <T> T get(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while generating documents");
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException("Failed to generate documents", e.getCause());
+    }
+  }
 
-          generator.writeStringField("taxon_label", taxonLabel);
-          writeOptionalArray("taxon_label_synonym", generator,
-                  (GraphUtil.getProperties(taxon.get(), Concept.SYNONYM, String.class)));
-        } else {
-          // https://github.com/monarch-initiative/dipper/issues/415
-          generator.writeStringField("taxon", "");
-          generator.writeStringField("taxon_label", "");
-          writeOptionalArray("taxon_label_synonym", generator, new ArrayList<Label>());
-        }
+  private static boolean writeDocuments(Writer writer, List<String> documents, boolean first,
+      String separator) throws IOException {
+    for (String document : documents) {
+      if (!first) {
+        writer.write(separator);
+      }
+      writer.write(document);
+      first = false;
+    }
+    return first;
+  }
 
-        // Check if node is connected to a phenotype
-        boolean hasPheno = isPhenotypeConnected(iri);
-        generator.writeBooleanField("has_phenotype", hasPheno);
-
-        // categories
-        writeOptionalArray("category", generator,
-                Lists.newArrayList(baseNode.getLabels()));
-
-        // equivalences
-        List<String> equivalences = new ArrayList<>();
-        for (Path path : graphDb.traversalDescription().breadthFirst()
-                .relationships(OwlRelationships.OWL_SAME_AS)
-                .relationships(OwlRelationships.OWL_EQUIVALENT_CLASS).traverse(baseNode)) {
-          if (path.length() > 0) {
-            equivalences.add(
-                    GraphUtil.getProperty(path.endNode(), NodeProperties.IRI, String.class).get());
-          }
+  private List<String> generateChunk(long[] ids, int from, int to,
+      Map<String, List<String>> eqCurieMap) throws IOException {
+    List<String> documents = new ArrayList<>(to - from);
+    try (Transaction tx = graphDb.beginTx()) {
+      for (int i = from; i < to; i++) {
+        StringWriter buffer = new StringWriter();
+        JsonGenerator generator = jsonFactory.createGenerator(buffer);
+        if (writeNode(graphDb.getNodeById(ids[i]), generator, eqCurieMap)) {
+          generator.writeRaw('\n');
+          generator.flush();
+          documents.add(buffer.toString());
         }
+      }
+      tx.success();
+    }
+    return documents;
+  }
 
-        List<String> equivalentCuries = new ArrayList<>();
-        if (eqCurieMap.containsKey(prefix)) {
-          for (String eqPrefix : eqCurieMap.get(prefix)) {
-            equivalentCuries.add(eqPrefix + ":" +  reference);
-          }
-        }
+  /***
+   * Writes the search document of a node.
+   *
+   * @return false if the node was skipped
+   */
+  private boolean writeNode(Node baseNode, JsonGenerator generator,
+      Map<String, List<String>> eqCurieMap) throws IOException {
+    String iri = GraphUtil.getProperty(baseNode, NodeProperties.IRI, String.class).get();
+    Optional<String> curie = curieUtil.getCurie(iri);
+
+    // Require nodes to have a label, and filter out blank nodes
+    if (!baseNode.hasProperty(NodeProperties.LABEL)
+            || iri.startsWith("_:")
+            || iri.startsWith("https://monarchinitiative.org/.well-known/genid/")) {
+      return false;
+    }
 
-        Set<String> synonyms = Sets.newHashSet(
-            GraphUtil.getProperties(baseNode, Concept.SYNONYM, String.class)
-        );
-
-        for (String equivalentIri : equivalences) {
-          // Get curie prefix
-          Optional<String> eqCurie = curieUtil.getCurie(equivalentIri);
-          Node eqNode = graphDb.getNodeById(graph.getNode(equivalentIri).get());
-          Set<String> eqSynonyms = Sets.newHashSet(
-              GraphUtil.getProperties(eqNode, Concept.SYNONYM, String.class)
-          );
-          synonyms.addAll(eqSynonyms);
-          if (eqCurie.isPresent()) {
-            equivalentCuries.add(eqCurie.get());
-            String[] eqParts = eqCurie.get().split(":");
-            if (eqParts.length == 1) {
-              logger.info("Curie does not have reference");
-              logger.info(curie.get());
-            } else {
-              String eqPrefix = eqParts[0];
-              String eqReference = eqParts[1];
-              if (eqCurieMap.containsKey(eqPrefix)) {
-                for (String prefx : eqCurieMap.get(eqPrefix)) {
-                  equivalentCuries.add(prefx + ":" +  eqReference);
-                }
-              }
-            }
-          }
-        }
+    if (!curie.isPresent()) {
+      logger.info("Cannot resolve IRI to curie");
+      logger.info(iri);
+      return false;
+    }
 
-        writeOptionalArray("synonym", generator, synonyms);
-        writeOptionalArray("equivalent_curie", generator, equivalentCuries);
+    String[] curieParts;
+    curieParts = curie.get().split(":");
+    if (curieParts.length == 1) {
+      logger.info("Curie does not have reference");
+      logger.info(curie.get());
+      return false;
+    }
 
-        // is leaf
-        if (baseNode.hasRelationship(Direction.INCOMING, OwlRelationships.RDFS_SUBCLASS_OF)) {
-          generator.writeBooleanField("leaf", false);
+    String prefix = curieParts[0];
+    String reference = curieParts[1];
+    generator.writeStartObject();
+    generator.writeStringField("id", curieUtil.getCurie(iri).orElse(iri));
+    generator.writeStringField("prefix", prefix);
+
+    try{
+      writeOptionalArray("label", generator,
+              GraphUtil.getProperties(baseNode, NodeProperties.LABEL, String.class));
+    } catch(Exception e) {
+      logger.severe(iri);
+      logger.severe(baseNode.getLabels().toString());
+      logger.severe(GraphUtil.getProperties(baseNode, NodeProperties.LABEL, Double.class).toString());
+      throw e;
+    }
+    writeOptionalArray("definition", generator,
+            GraphUtil.getProperties(baseNode, Concept.DEFINITION, String.class));
+
+    // Abbreviation (need to fix spelling in io.scigraph.frames.Concept
+    writeOptionalArray("abbreviation", generator,
+        GraphUtil.getProperties(baseNode, Concept.ABREVIATION, String.class));
+
+    // Number of edges
+    generator.writeNumberField("edges", baseNode.getDegree());
+
+    // taxon
+    Optional<Node> taxon = Optional.empty();
+    for (Path path : taxonDescription.traverse(baseNode)) {
+      if (path.length() > 0) {
+        taxon = Optional.of(path.endNode());
+        break;
+      }
+    }
+
+    if (taxon.isPresent()) {
+      String taxonIri =
+              GraphUtil.getProperty(taxon.get(), NodeProperties.IRI, String.class).get();
+      generator.writeStringField("taxon", curieUtil.getCurie(taxonIri).orElse(taxonIri));
+
+      Collection<String> lbs =
+              GraphUtil.getProperties(taxon.get(), NodeProperties.LABEL, String.class);
+      String taxonLabel = "";
+      if (lbs.size() >= 1) {
+        taxonLabel = lbs.iterator().next();
+      }
+      // https://github.com/monarch-initiative/dipper/issues/415
+      if (lbs.size() > 1 && !tmp.contains(taxon.get().getProperty("iri").toString())) {
+        tmp.add(taxon.get().getProperty("iri").toString());
+        // logged rather than printed so that documents streamed to stdout stay valid
+        logger.warning("Multiple taxon labels for " + taxon.get().getProperty("iri") + ": "
+            + lbs);
+      }
+
+      generator.writeStringField("taxon_label", taxonLabel);
+      writeOptionalArray("taxon_label_synonym", generator,
+              (GraphUtil.getProperties(taxon.get(), Concept.SYNONYM, String.class)));
+    } else {
+      // https://github.com/monarch-initiative/dipper/issues/415
+      generator.writeStringField("taxon", "");
+      generator.writeStringField("taxon_label", "");
+      writeOptionalArray("taxon_label_synonym", generator, new ArrayList<Label>());
+    }
+
+    // Check if node is connected to a phenotype
+    generator.writeBooleanField("has_phenotype",
+        phenotypeConnected.contains(baseNode.getId()));
+
+    // categories
+    writeOptionalArray("category", generator,
+            Lists.newArrayList(baseNode.getLabels()));
+
+    // equivalences
+    List<Node> equivalences = new ArrayList<>();
+    for (Path path : equivalenceDescription.traverse(baseNode)) {
+      if (path.length() > 0) {
+        equivalences.add(path.endNode());
+      }
+    }
+
+    List<String> equivalentCuries = new ArrayList<>();
+    if (eqCurieMap.containsKey(prefix)) {
+      for (String eqPrefix : eqCurieMap.get(prefix)) {
+        equivalentCuries.add(eqPrefix + ":" +  reference);
+      }
+    }
+
+    Set<String> synonyms = Sets.newHashSet(
+        GraphUtil.getProperties(baseNode, Concept.SYNONYM, String.class)
+    );
+
+    for (Node eqNode : equivalences) {
+      // Get curie prefix
+      String equivalentIri = GraphUtil.getProperty(eqNode, NodeProperties.IRI, String.class).get();
+      Optional<String> eqCurie = curieUtil.getCurie(equivalentIri);
+      Set<String> eqSynonyms = Sets.newHashSet(
+          GraphUtil.getProperties(eqNode, Concept.SYNONYM, String.class)
+      );
+      synonyms.addAll(eqSynonyms);
+      if (eqCurie.isPresent()) {
+        equivalentCuries.add(eqCurie.get());
+        String[] eqParts = eqCurie.get().split(":");
+        if (eqParts.length == 1) {
+          logger.info("Curie does not have reference");
+          logger.info(curie.get());
         } else {
-          generator.writeBooleanField("leaf", true);
+          String eqPrefix = eqParts[0];
+          String eqReference = eqParts[1];
+          if (eqCurieMap.containsKey(eqPrefix)) {
+            for (String prefx : eqCurieMap.get(eqPrefix)) {
+              equivalentCuries.add(prefx + ":" +  eqReference);
+            }
+          }
         }
-
-        // end of object
-        generator.writeEndObject();
-        generator.writeRaw('\n');
       }
-      tx.success();
     }
 
-    generator.writeEndArray();
-    generator.flush();
+    writeOptionalArray("synonym", generator, synonyms);
+    writeOptionalArray("equivalent_curie", generator, equivalentCuries);
+
+    // is leaf
+    if (baseNode.hasRelationship(Direction.INCOMING, OwlRelationships.RDFS_SUBCLASS_OF)) {
+      generator.writeBooleanField("leaf", false);
+    } else {
+      generator.writeBooleanField("leaf", true);
+    }
 
-    graphDb.shutdown();
+    // end of object
+    generator.writeEndObject();
+    return true;
   }
 
   private boolean isInLabelSet(Iterable<Label> nodeLabels, Set<String> validLabels) {
@@ -256,20 +476,23 @@ class SimpleLoader {
     return false;
   }
 
-  private boolean isPhenotypeConnected(String iri) {
-    boolean hasPhenotype = false;
-    String phenoQuery = String.format(
-        "MATCH (n:Node {iri:'%s'})-[:`http://purl.obolibrary.org/obo/RO_0002200`]-(:phenotype) RETURN n LIMIT 1",
-        iri);
+  /***
+   * Collects, in one pass from the phenotype side, the ids of the nodes that have a
+   * RO_0002200 edge to or from a phenotype.
+   */
+  NodeIdSet getPhenotypeConnectedIds() {
+    NodeIdSet ids = new NodeIdSet();
     try (Transaction tx = graphDb.beginTx()) {
-
-      Result result = graphDb.execute(phenoQuery);
-      if (result.hasNext()) {
-        hasPhenotype = true;
+      ResourceIterator<Node> phenotypes = graphDb.findNodes(phenotypeLabel);
+      while (phenotypes.hasNext()) {
+        Node phenotype = phenotypes.next();
+        for (Relationship relationship : phenotype.getRelationships(hasPhenotype)) {
+          ids.add(relationship.getOtherNode(phenotype).getId());
+        }
       }
       tx.success();
     }
-    return hasPhenotype;
+    return ids;
   }
 
   public void writeOptionalArray(String fieldName, JsonGenerator generator,
@@ -294,12 +517,4 @@ class SimpleLoader {
     }
     generator.writeEndArray();
   }
-
-  public int getEdgeCount(Iterable<Relationship> relationships) {
-    int size = 0;
-    for(Relationship value : relationships) {
-      size++;
-    }
-    return size;
-  }
 }
@@ -1,10 +1,12 @@
 package org.monarch.golr;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -13,6 +15,7 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.neo4j.graphdb.GraphDatabaseService;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -30,6 +33,8 @@ import io.scigraph.neo4j.Neo4jModule;
 
 public class SimpleLoaderMain {
 
+  private static final int BUFFER_SIZE = 1 << 16;
+
   private static ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
 
   static {
@@ -44,15 +49,83 @@ public class SimpleLoaderMain {
     options.addOption(option);
     option =
         Option.builder("o").longOpt("output").required(false).hasArg()
-            .desc("An optional output file for the JSON").build();
+            .desc("An optional output file for the JSON, stdout otherwise").build();
     options.addOption(option);
     option =
        Option.builder("m").longOpt("eq-map").required(false).hasArg()
              .desc("An optional equivalent prefix file").build();
     options.addOption(option);
+    option = Option.builder("t").longOpt("threads").hasArg()
+        .desc("Worker threads (default: available processors)").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("unordered")
+        .desc("Write documents as soon as their chunk is done instead of in node order").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("ndjson")
+        .desc("Write one document per line instead of a JSON array").build();
+    options.addOption(option);
+    option = Option.builder("z").longOpt("compress").hasArg()
+        .desc("none, gzip or zstd (default: from the output file extension)").build();
+    options.addOption(option);
+    option = Option.builder("s").longOpt("solr-server").hasArg()
+        .desc("Index the documents directly into this Solr server instead of writing JSON").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("solr-connections").hasArg()
+        .desc("Number of parallel connections sending batches to Solr (default "
+            + SolrIndexer.DEFAULT_CONNECTIONS + ")").build();
+    options.addOption(option);
+    option = Option.builder().longOpt("solr-queue-size").hasArg()
+        .desc("Number of batches queued for Solr before workers block (default "
+            + SolrIndexer.DEFAULT_QUEUE_SIZE + ")").build();
+    options.addOption(option);
+    Pipeline.addCommitOptions(options);
     return options;
   }
 
+  /***
+   * Picks the compression from the output file extension when none is given.
+   */
+  static String getCompression(CommandLine cmd, Optional<String> outputFile) {
+    if (cmd.hasOption("z")) {
+      return cmd.getOptionValue("z");
+    } else if (outputFile.isPresent() && outputFile.get().endsWith(".gz")) {
+      return "gzip";
+    } else if (outputFile.isPresent() && outputFile.get().endsWith(".zst")) {
+      return "zstd";
+    }
+    return "none";
+  }
+
+  static OutputStream compress(OutputStream out, String compression) throws IOException {
+    switch (compression) {
+      case "none":
+        return out;
+      case "gzip":
+        return new GZIPOutputStream(out, BUFFER_SIZE);
+      case "zstd":
+        // zstd-jni is optional, so it is only looked up when asked for
+        try {
+          return (OutputStream) Class.forName("com.github.luben.zstd.ZstdOutputStream")
+              .getConstructor(OutputStream.class).newInstance(out);
+        } catch (ReflectiveOperationException e) {
+          throw new IOException("zstd compression requires zstd-jni on the classpath", e);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown compression: " + compression);
+    }
+  }
+
+  /***
+   * @return a buffered UTF-8 writer on the output file, or on stdout
+   */
+  static Writer openOutput(Optional<String> outputFile, String compression) throws IOException {
+    OutputStream out = outputFile.isPresent()
+        ? new FileOutputStream(outputFile.get())
+        : new FileOutputStream(FileDescriptor.out);
+    return new BufferedWriter(
+        new OutputStreamWriter(compress(out, compression), StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
   public static void main(String[] args) throws JsonParseException, JsonMappingException,
       IOException {
     Options options = getOptions();
@@ -60,25 +133,43 @@ public class SimpleLoaderMain {
     CommandLine cmd;
     Neo4jConfiguration neo4jConfig = null;
     Optional<String> outputFile = Optional.empty();
-    Writer writer = null;
+    String compression = "none";
     Map<String, List<String>> eqCurieMap = new HashMap<>();
-    boolean hasOutputFile = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean ordered = true;
+    boolean ndjson = false;
+    Optional<String> solrServer = Optional.empty();
+    int solrConnections = SolrIndexer.DEFAULT_CONNECTIONS;
+    int solrQueueSize = SolrIndexer.DEFAULT_QUEUE_SIZE;
+    CommitPolicy commitPolicy = CommitPolicy.finalCommit();
 
     try {
       cmd = parser.parse(options, args);
       if (cmd.hasOption("o")) {
         outputFile = Optional.of(cmd.getOptionValue("o"));
-        writer = new FileWriter(new File(outputFile.get()));
-        hasOutputFile = true;
-      } else {
-        writer = new StringWriter();
       }
+      compression = getCompression(cmd, outputFile);
       if (cmd.hasOption("m")) {
         eqCurieMap = mapper.readValue(new File(cmd.getOptionValue("m")),
                 new TypeReference<Map<String, List<String>>>() {} );
       }
+      if (cmd.hasOption("t")) {
+        threads = Integer.parseInt(cmd.getOptionValue("t"));
+      }
+      ordered = !cmd.hasOption("unordered");
+      ndjson = cmd.hasOption("ndjson");
+      if (cmd.hasOption("s")) {
+        solrServer = Optional.of(cmd.getOptionValue("s"));
+      }
+      if (cmd.hasOption("solr-connections")) {
+        solrConnections = Integer.parseInt(cmd.getOptionValue("solr-connections"));
+      }
+      if (cmd.hasOption("solr-queue-size")) {
+        solrQueueSize = Integer.parseInt(cmd.getOptionValue("solr-queue-size"));
+      }
+      commitPolicy = Pipeline.getCommitPolicy(cmd);
       neo4jConfig = mapper.readValue(new File(cmd.getOptionValue("g")), Neo4jConfiguration.class);
-    } catch (ParseException e) {
+    } catch (ParseException | IllegalArgumentException e) {
       e.printStackTrace();
       new HelpFormatter().printHelp("SimpleLoader", options);
       System.exit(-1);
@@ -86,15 +177,23 @@ public class SimpleLoaderMain {
 
     Injector i = Guice.createInjector(new SimpleLoaderModule(), new Neo4jModule(neo4jConfig));
     SimpleLoader loader = i.getInstance(SimpleLoader.class);
+    GraphDatabaseService graphDb = i.getInstance(GraphDatabaseService.class);
 
     Stopwatch sw = Stopwatch.createStarted();
-    loader.generate(writer, eqCurieMap);
-
-    if (!hasOutputFile) {
-      System.out.println(writer.toString());
+    if (solrServer.isPresent()) {
+      try (SolrIndexer indexer = new SolrIndexer(solrServer.get(), solrConnections,
+          solrQueueSize, commitPolicy)) {
+        long count = loader.index(indexer, eqCurieMap, threads);
+        System.err.println("Indexed " + count + " documents");
+      }
+    } else {
+      try (Writer writer = openOutput(outputFile, compression)) {
+        loader.generate(writer, eqCurieMap, threads, ordered, ndjson);
+      }
     }
+    graphDb.shutdown();
 
-    System.out.println("Completed in " + sw.stop());
+    System.err.println("Completed in " + sw.stop());
 
   }
 }
@@ -1,22 +1,19 @@
 package org.monarch.golr;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 
-import org.apache.solr.common.SolrInputDocument;
-
+import org.monarch.golr.GolrDocument.DistinctValues;
 import org.monarch.golr.beans.Closure;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSet;
 
 import io.scigraph.neo4j.DirectedRelationshipType;
@@ -45,7 +42,11 @@ class SolrDocUtil {
   static final Collection<DirectedRelationshipType> EQUIVALENT_EDGES =
       ImmutableSet.of(EQUIVALENT_CLASS, SAME_AS);
   
-  private final ObjectMapper mapper = new ObjectMapper();
+  // The five field names of each quint, built once per base name
+  private static final ConcurrentMap<String, String[]> QUINT_FIELDS = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<ClosureMap> closureMaps = ThreadLocal.withInitial(ClosureMap::new);
+
   private final ClosureUtil closureUtil;
   
   @Inject
@@ -55,7 +56,7 @@ class SolrDocUtil {
   
   
   void addNodes(String fieldName, Collection<Node> values,
-      Collection<DirectedRelationshipType> types, SolrInputDocument solrDoc) throws IOException {
+      Collection<DirectedRelationshipType> types, GolrDocument solrDoc) throws IOException {
     List<Closure> closures = new ArrayList<>();
     for (Node node: values) {
       closures.add(closureUtil.getClosure(node, types));
@@ -65,29 +66,45 @@ class SolrDocUtil {
   
 
   void addNodes(String fieldName, Collection<Node> values,
-      SolrInputDocument solrDoc) throws IOException {
+      GolrDocument solrDoc) throws IOException {
     addNodes(fieldName, values, DEFAULT_CLOSURE_TYPES, solrDoc);
   }
   
-  void addClosure(String fieldName, List<String> closures, SolrInputDocument solrDoc) {
-    Set<String> closureSet = new HashSet<String>(closures);
-    List<String> closureList = new ArrayList<String>(closureSet);
-    solrDoc.addField(fieldName, closureList);
+  void addClosure(String fieldName, List<String> closures, GolrDocument solrDoc) {
+    DistinctValues values = solrDoc.getDistinctValues(fieldName);
+    for (String closure : closures) {
+      values.addDistinct(closure);
+    }
   }
   
-  void writeQuint(String baseName, List<Closure> closures, SolrInputDocument solrDoc)
+  private static String[] getQuintFields(String baseName) {
+    return QUINT_FIELDS.computeIfAbsent(baseName, name -> new String[] {
+        name + ID_SUFFIX, name + LABEL_SUFFIX, name + ID_CLOSURE_SUFFIX,
+        name + LABEL_CLOSURE_SUFFIX, name + CLOSURE_MAP_SUFFIX});
+  }
+
+  /***
+   * Writes the five fields of each closure in one pass, appending straight into the document's
+   * fields rather than collecting each field into an intermediate list first.
+   */
+  void writeQuint(String baseName, List<Closure> closures, GolrDocument solrDoc)
           throws IOException {
-    addClosure(baseName + ID_SUFFIX, ClosureUtil.collectIds(closures), solrDoc);
-    addClosure(baseName + LABEL_SUFFIX, ClosureUtil.collectLabels(closures), solrDoc);
-    addClosure(baseName + ID_CLOSURE_SUFFIX,
-        ClosureUtil.collectIdClosure(closures), solrDoc);
-    addClosure(baseName + LABEL_CLOSURE_SUFFIX,
-        ClosureUtil.collectLabelClosure(closures), solrDoc);
-    StringWriter writer = new StringWriter();
-    mapper.writeValue(writer, ClosureUtil.collectClosureMap(closures));
-    solrDoc.addField(baseName + CLOSURE_MAP_SUFFIX, writer.toString());
+    String[] fields = getQuintFields(baseName);
+    DistinctValues ids = solrDoc.getDistinctValues(fields[0]);
+    DistinctValues labels = solrDoc.getDistinctValues(fields[1]);
+    DistinctValues idClosure = solrDoc.getDistinctValues(fields[2]);
+    DistinctValues labelClosure = solrDoc.getDistinctValues(fields[3]);
+    for (Closure closure : closures) {
+      ids.addDistinct(closure.getCurie());
+      labels.addDistinct(closure.getLabel());
+      for (String curie : closure.getCuries()) {
+        idClosure.addDistinct(curie);
+      }
+      for (String label : closure.getLabels()) {
+        labelClosure.addDistinct(label);
+      }
+    }
+    solrDoc.addField(fields[4], closureMaps.get().toJson(closures));
   }
-  
-  
 
 }
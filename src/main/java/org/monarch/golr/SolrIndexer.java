@@ -0,0 +1,401 @@
+package org.monarch.golr;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/***
+ * Sends document batches to Solr from a fixed pool of sender threads sharing one client.
+ *
+ * <p>Batches wait in a bounded queue; {@link #index(Collection)} only blocks when the queue is
+ * full. Failed requests are retried with exponential backoff. A batch that still fails after the
+ * last retry fails the indexer, and the error is rethrown to the next caller of {@link #index}
+ * or {@link #close()}. Commits follow the {@link CommitPolicy}, the final hard commit is issued
+ * by {@link #close()} once every batch has been sent.
+ *
+ * <p>{@link #openBatch()} sends a large batch in update requests of at most the batch size as
+ * it is built, so that it is never held in full. A request of such a batch that still fails after
+ * the last retry only fails the batch, as long as the thread building it can still be told.
+ */
+class SolrIndexer implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(SolrIndexer.class.getName());
+
+  static final int DEFAULT_CONNECTIONS = 4;
+  static final int DEFAULT_QUEUE_SIZE = 8;
+  static final int DEFAULT_MAX_RETRIES = 5;
+  static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+
+  // Same as solr.jetty.http.idleTimeout
+  private static final int TIMEOUT_MS = 200000;
+
+  static final int DEFAULT_BATCH_SIZE = 500;
+
+  private final SolrClient solrClient;
+  private final String name;
+  private final CommitPolicy commitPolicy;
+  private final ExecutorService senders;
+  private final Semaphore slots;
+  private final int batchSize;
+  private final int maxRetries;
+  private final long initialBackoffMs;
+  private final AtomicLong indexedCount = new AtomicLong();
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  private final Object softCommitLock = new Object();
+  private long lastSoftCommitCount = 0;
+  private long lastSoftCommitTime = System.currentTimeMillis();
+
+  private interface SolrCall {
+    void call() throws IOException, SolrServerException;
+  }
+
+  SolrIndexer(String solrServer, int connections, int queueSize, CommitPolicy commitPolicy) {
+    this(solrServer, connections, queueSize, DEFAULT_BATCH_SIZE, commitPolicy);
+  }
+
+  SolrIndexer(String solrServer, int connections, int queueSize, int batchSize,
+      CommitPolicy commitPolicy) {
+    this(createClient(solrServer), solrServer, connections, queueSize, batchSize, commitPolicy,
+        DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_BACKOFF_MS);
+  }
+
+  SolrIndexer(SolrClient solrClient, String name, int connections, int queueSize,
+      CommitPolicy commitPolicy, int maxRetries, long initialBackoffMs) {
+    this(solrClient, name, connections, queueSize, DEFAULT_BATCH_SIZE, commitPolicy, maxRetries,
+        initialBackoffMs);
+  }
+
+  SolrIndexer(SolrClient solrClient, String name, int connections, int queueSize, int batchSize,
+      CommitPolicy commitPolicy, int maxRetries, long initialBackoffMs) {
+    checkArgument(batchSize > 0, "The batch size must be positive, not %s", batchSize);
+    this.solrClient = solrClient;
+    this.name = name;
+    this.commitPolicy = commitPolicy;
+    this.senders = Executors.newFixedThreadPool(connections,
+        new ThreadFactoryBuilder().setNameFormat("Solr indexer %d").setDaemon(true).build());
+    this.slots = new Semaphore(connections + queueSize);
+    this.batchSize = batchSize;
+    this.maxRetries = maxRetries;
+    this.initialBackoffMs = initialBackoffMs;
+  }
+
+  private static SolrClient createClient(String solrServer) {
+    // HttpSolrClient is thread safe and pools its connections
+    HttpSolrClient solrClient = new HttpSolrClient.Builder(solrServer).build();
+    // javabin is more compact and cheaper to marshal than XML
+    solrClient.setRequestWriter(new BinaryRequestWriter());
+    solrClient.setSoTimeout(TIMEOUT_MS);
+    solrClient.setConnectionTimeout(TIMEOUT_MS);
+    return solrClient;
+  }
+
+  /***
+   * Queues a batch for indexing. The indexer takes ownership of the collection, callers must
+   * not modify it afterwards.
+   */
+  void index(Collection<SolrInputDocument> docs) throws IOException, InterruptedException {
+    index(docs, () -> {});
+  }
+
+  /***
+   * @param onIndexed run by the sender thread once Solr has acknowledged the batch
+   */
+  void index(Collection<SolrInputDocument> docs, Runnable onIndexed)
+      throws IOException, InterruptedException {
+    index(docs, onIndexed, this::fail);
+  }
+
+  private void index(Collection<SolrInputDocument> docs, Runnable onIndexed,
+      Consumer<Exception> onFailure) throws IOException, InterruptedException {
+    checkFailure();
+    if (docs.isEmpty()) {
+      onIndexed.run();
+      return;
+    }
+    slots.acquire();
+    try {
+      senders.execute(() -> {
+        try {
+          send(docs, onIndexed, onFailure);
+        } finally {
+          slots.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      slots.release();
+      throw e;
+    }
+  }
+
+  /***
+   * Opens a batch that is sent while it is being built. The batch must be closed, or aborted,
+   * by the thread adding to it.
+   */
+  Batch openBatch() throws IOException {
+    checkFailure();
+    return new Batch();
+  }
+
+  /***
+   * Deletes the matching documents. The call is synchronous, so batches queued afterwards are
+   * not affected by it.
+   */
+  void deleteByQuery(String query) throws IOException {
+    checkFailure();
+    retry("delete by query", () -> solrClient.deleteByQuery(query,
+        commitPolicy.getCommitWithinMs()));
+    checkFailure();
+  }
+
+  /***
+   * Deletes the documents with these ids, synchronously like {@link #deleteByQuery}.
+   */
+  void deleteById(List<String> ids) throws IOException {
+    checkFailure();
+    retry("delete of " + ids.size() + " ids", () -> solrClient.deleteById(ids,
+        commitPolicy.getCommitWithinMs()));
+    checkFailure();
+  }
+
+  private void send(Collection<SolrInputDocument> docs, Runnable onIndexed,
+      Consumer<Exception> onFailure) {
+    if (null != failure.get()) {
+      return;
+    }
+    boolean sent = retry("batch of " + docs.size() + " documents",
+        () -> solrClient.add(docs, commitPolicy.getCommitWithinMs()), onFailure);
+    if (sent) {
+      indexedCount.addAndGet(docs.size());
+      onIndexed.run();
+      maybeSoftCommit();
+    }
+  }
+
+  /***
+   * A batch handed to the senders in update requests of at most the batch size while it is being
+   * built, so its producer never holds more than one request. Each request is queued and retried
+   * like any other batch; the batch is acknowledged once all of them are.
+   *
+   * <p>A request that still fails after the last retry is rethrown to the producer by the next
+   * {@link #add} or {@link #close}, and the indexer carries on. Once the batch is closed nobody
+   * is left to tell, so the failure fails the indexer like that of any other batch.
+   */
+  class Batch {
+
+    // One for the producer until the batch is closed, plus one per request in flight
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private volatile Runnable onIndexed = () -> {};
+    private List<SolrInputDocument> request = new ArrayList<>();
+    private int size = 0;
+    // Guarded by this, as they are also updated by the senders
+    private boolean open = true;
+    private boolean aborted = false;
+    private Exception failure;
+
+    private Batch() {}
+
+    void add(SolrInputDocument doc) throws IOException, InterruptedException {
+      checkOpen();
+      request.add(doc);
+      size++;
+      if (request.size() >= batchSize) {
+        flush();
+      }
+    }
+
+    int size() {
+      return size;
+    }
+
+    /***
+     * Sends the last request.
+     *
+     * @param onIndexed run once Solr has acknowledged every document of the batch
+     */
+    void close(Runnable onIndexed) throws IOException, InterruptedException {
+      checkOpen();
+      checkFailure();
+      this.onIndexed = onIndexed;
+      if (!request.isEmpty()) {
+        flush();
+      }
+      synchronized (this) {
+        checkOpen();
+        open = false;
+      }
+      acknowledge();
+    }
+
+    /***
+     * Drops the documents not sent yet. The batch will never be acknowledged, requests already
+     * queued are still sent and the indexer carries on.
+     */
+    synchronized void abort() {
+      if (open) {
+        open = false;
+        aborted = true;
+        request.clear();
+      }
+    }
+
+    private synchronized void checkOpen() throws IOException {
+      checkState(open, "Batch to %s is closed", name);
+      if (null != failure) {
+        throw new IOException("Failed to index a batch to " + name, failure);
+      }
+    }
+
+    private void flush() throws IOException, InterruptedException {
+      List<SolrInputDocument> docs = request;
+      request = new ArrayList<>();
+      pending.incrementAndGet();
+      index(docs, this::acknowledge, this::fail);
+    }
+
+    private void acknowledge() {
+      if (0 == pending.decrementAndGet()) {
+        onIndexed.run();
+      }
+    }
+
+    private void fail(Exception e) {
+      synchronized (this) {
+        if (open) {
+          if (null == failure) {
+            failure = e;
+          }
+          return;
+        } else if (aborted) {
+          // Its producer has already failed
+          return;
+        }
+      }
+      SolrIndexer.this.fail(e);
+    }
+
+  }
+
+  private void maybeSoftCommit() {
+    synchronized (softCommitLock) {
+      long count = indexedCount.get();
+      long now = System.currentTimeMillis();
+      if (!commitPolicy.isSoftCommitDue(count - lastSoftCommitCount, now - lastSoftCommitTime)) {
+        return;
+      }
+      lastSoftCommitCount = count;
+      lastSoftCommitTime = now;
+      try {
+        solrClient.commit(false, false, true);
+        logger.info("Soft committed " + count + " documents to " + name);
+      } catch (IOException | SolrServerException | RuntimeException e) {
+        // Only affects visibility, the final commit still makes everything durable
+        logger.warning("Soft commit failed: " + e);
+      }
+    }
+  }
+
+  /***
+   * @return true if the call eventually succeeded, otherwise the indexer is failed
+   */
+  private boolean retry(String description, SolrCall call) {
+    return retry(description, call, this::fail);
+  }
+
+  /***
+   * @param onFailure given the last error if the call never succeeded
+   */
+  private boolean retry(String description, SolrCall call, Consumer<Exception> onFailure) {
+    long backoff = initialBackoffMs;
+    for (int attempt = 0;; attempt++) {
+      try {
+        call.call();
+        return true;
+      } catch (IOException | SolrServerException | RuntimeException e) {
+        if (attempt >= maxRetries) {
+          logger.log(Level.SEVERE, "Giving up on " + description, e);
+          onFailure.accept(e);
+          return false;
+        }
+        logger.warning("Caught: " + e + ", retrying in " + backoff + " ms");
+      }
+      try {
+        Thread.sleep(backoff);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        onFailure.accept(e);
+        return false;
+      }
+      backoff *= 2;
+    }
+  }
+
+  private void fail(Exception e) {
+    failure.compareAndSet(null, e);
+  }
+
+  private void checkFailure() throws IOException {
+    Exception e = failure.get();
+    if (null != e) {
+      throw new IOException("Failed to index documents to " + name, e);
+    }
+  }
+
+  long getIndexedCount() {
+    return indexedCount.get();
+  }
+
+  /***
+   * Waits for all queued batches to be sent, commits, optionally optimizes and releases the
+   * client.
+   */
+  @Override
+  public void close() throws IOException {
+    senders.shutdown();
+    try {
+      senders.awaitTermination(1, TimeUnit.DAYS);
+      if (null == failure.get()) {
+        logger.info("Committing " + indexedCount.get() + " documents to " + name);
+        if (retry("commit", () -> solrClient.commit()) && commitPolicy.isOptimize()) {
+          logger.info("Optimizing " + name);
+          retry("optimize", () -> solrClient.optimize());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(e);
+    } finally {
+      solrClient.close();
+    }
+    logger.info("Indexed " + indexedCount.get() + " documents to " + name);
+    checkFailure();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+}
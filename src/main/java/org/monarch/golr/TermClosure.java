@@ -0,0 +1,78 @@
+package org.monarch.golr;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import org.monarch.golr.beans.Closure;
+
+/***
+ * A closure held as term ids of a {@link TermDictionary}. The curie and label lists are read
+ * only views resolved through the dictionary.
+ */
+class TermClosure extends Closure {
+
+  private final TermDictionary dictionary;
+  private final int term;
+  private final int[] terms;
+
+  TermClosure(TermDictionary dictionary, int term, int[] terms) {
+    this.dictionary = dictionary;
+    this.term = term;
+    this.terms = terms;
+  }
+
+  int[] getTerms() {
+    return terms;
+  }
+
+  @Override
+  public String getCurie() {
+    return dictionary.getCurie(term);
+  }
+
+  @Override
+  public void setCurie(String curie) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String getLabel() {
+    return dictionary.getLabel(term);
+  }
+
+  @Override
+  public void setLabel(String label) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<String> getCuries() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return dictionary.getCurie(terms[index]);
+      }
+
+      @Override
+      public int size() {
+        return terms.length;
+      }
+    };
+  }
+
+  @Override
+  public List<String> getLabels() {
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return dictionary.getLabel(terms[index]);
+      }
+
+      @Override
+      public int size() {
+        return terms.length;
+      }
+    };
+  }
+
+}
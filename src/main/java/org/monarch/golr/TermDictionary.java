@@ -0,0 +1,94 @@
+package org.monarch.golr;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import org.neo4j.graphdb.Node;
+
+/***
+ * The curie and label of every node a closure has visited, resolved once and addressed by an
+ * int term id. Closures keep term ids instead of their own copies of the strings.
+ *
+ * <p>Terms are stored in fixed size pages that never move, so a term id can be read without
+ * locking once it has been handed out.
+ */
+class TermDictionary {
+
+  private static final int PAGE_BITS = 12;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  private final Function<Node, String> curieOf;
+  private final Function<Node, String> labelOf;
+  private final NodeAttributeCache nodeTerms = new NodeAttributeCache("term dictionary", 0);
+  private volatile String[][] curiePages = new String[16][];
+  private volatile String[][] labelPages = new String[16][];
+  private volatile long[][] nodePages = new long[16][];
+  private int size = 0;
+
+  TermDictionary(Function<Node, String> curieOf, Function<Node, String> labelOf) {
+    this.curieOf = curieOf;
+    this.labelOf = labelOf;
+  }
+
+  /***
+   * @return the term id of a node, resolving its curie and label on first use
+   */
+  int getTerm(Node node) {
+    return getTerm(node.getId(), nodeId -> node);
+  }
+
+  /***
+   * @param nodeOf only called if the node has no term yet
+   */
+  int getTerm(long nodeId, LongFunction<Node> nodeOf) {
+    // Racing threads may both add a node, but the cache returns the term stored first to both,
+    // so the extra term is never referenced and closures still share one term per node
+    return (int) nodeTerms.get(nodeId, id -> {
+      Node node = nodeOf.apply(id);
+      return add(id, curieOf.apply(node), labelOf.apply(node));
+    });
+  }
+
+  private synchronized int add(long nodeId, String curie, String label) {
+    int term = size;
+    int page = term >>> PAGE_BITS;
+    if (page == curiePages.length) {
+      curiePages = Arrays.copyOf(curiePages, page * 2);
+      labelPages = Arrays.copyOf(labelPages, page * 2);
+      nodePages = Arrays.copyOf(nodePages, page * 2);
+    }
+    if (null == curiePages[page]) {
+      curiePages[page] = new String[PAGE_SIZE];
+      labelPages[page] = new String[PAGE_SIZE];
+      nodePages[page] = new long[PAGE_SIZE];
+    }
+    curiePages[page][term & PAGE_MASK] = curie;
+    labelPages[page][term & PAGE_MASK] = label;
+    nodePages[page][term & PAGE_MASK] = nodeId;
+    size++;
+    return term;
+  }
+
+  String getCurie(int term) {
+    return curiePages[term >>> PAGE_BITS][term & PAGE_MASK];
+  }
+
+  String getLabel(int term) {
+    return labelPages[term >>> PAGE_BITS][term & PAGE_MASK];
+  }
+
+  long getNodeId(int term) {
+    return nodePages[term >>> PAGE_BITS][term & PAGE_MASK];
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  void logStats(String context) {
+    nodeTerms.logStats(context);
+  }
+
+}
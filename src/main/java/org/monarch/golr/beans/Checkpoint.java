@@ -0,0 +1,76 @@
+package org.monarch.golr.beans;
+
+import com.google.common.base.MoreObjects;
+
+/***
+ * How far a query (or query partition) got: the last subject/object pair, or the id of the last
+ * feature row, whose document Solr has acknowledged, or whether every document was.
+ */
+public class Checkpoint {
+
+  private String subject;
+  private String object;
+  private String row;
+  private boolean complete;
+
+  public Checkpoint() { }
+
+  public Checkpoint(String subject, String object) {
+    this.subject = subject;
+    this.object = object;
+  }
+
+  public static Checkpoint atRow(String row) {
+    Checkpoint checkpoint = new Checkpoint();
+    checkpoint.setRow(row);
+    return checkpoint;
+  }
+
+  public static Checkpoint completed() {
+    Checkpoint checkpoint = new Checkpoint();
+    checkpoint.setComplete(true);
+    return checkpoint;
+  }
+
+  public String getSubject() {
+    return subject;
+  }
+
+  public void setSubject(String subject) {
+    this.subject = subject;
+  }
+
+  public String getObject() {
+    return object;
+  }
+
+  public void setObject(String object) {
+    this.object = object;
+  }
+
+  public String getRow() {
+    return row;
+  }
+
+  public void setRow(String row) {
+    this.row = row;
+  }
+
+  public boolean isComplete() {
+    return complete;
+  }
+
+  public void setComplete(boolean complete) {
+    this.complete = complete;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("subject", subject)
+        .add("object", object)
+        .add("row", row)
+        .add("complete", complete).toString();
+  }
+
+}
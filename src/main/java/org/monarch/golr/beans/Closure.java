@@ -12,8 +12,9 @@ public class Closure {
 
   private String curie;
   private String label;
-  private final List<String> curies = new ArrayList<>();
-  private final List<String> labels = new ArrayList<>();
+  // Created on first use, closures backed by a term dictionary never fill them
+  private List<String> curies;
+  private List<String> labels;
 
   public String getCurie() {
     return curie;
@@ -32,18 +33,24 @@ public class Closure {
   }
 
   public List<String> getCuries() {
+    if (null == curies) {
+      curies = new ArrayList<>();
+    }
     return curies;
   }
 
   public List<String> getLabels() {
+    if (null == labels) {
+      labels = new ArrayList<>();
+    }
     return labels;
   }
 
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
-        .add("curies", curies)
-        .add("labels", labels).toString();
+        .add("curies", getCuries())
+        .add("labels", getLabels()).toString();
   }
 
 }
@@ -1,10 +1,14 @@
 package org.monarch.golr.beans;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.scigraph.neo4j.DirectedRelationshipType;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.HashMultimap;
@@ -20,7 +24,18 @@ public class GolrCypherQuery {
   private String relationClosure;
   @JsonProperty("evidence_closure")
   private String evidenceClosure;
+  /**
+   * Number of subject partitions to run the query in. Partitioned queries must restrict their
+   * subjects with the {partition} and {partitions} parameters, for instance
+   * {@code WHERE id(subject) % {partitions} = {partition}}, and are rejected otherwise.
+   */
+  private int partitions = 1;
   private Multimap<String, DirectedRelationshipType> types = HashMultimap.create();
+  /**
+   * The closure strings above resolved to relationship types, keyed by their property name.
+   */
+  private final ConcurrentMap<String, Set<DirectedRelationshipType>> resolvedClosures =
+      new ConcurrentHashMap<>();
 
   public GolrCypherQuery() { }
 
@@ -60,18 +75,28 @@ public class GolrCypherQuery {
   public String getEvidenceClosure() {
     return evidenceClosure;
   }
+  public int getPartitions() {
+    return partitions;
+  }
 
   public void setSubjectClosure(String subjectClosure) {
     this.subjectClosure = subjectClosure;
+    resolvedClosures.remove("subject_closure");
   }
   public void setObjectClosure(String objectClosure) {
     this.objectClosure = objectClosure;
+    resolvedClosures.remove("object_closure");
   }
   public void setRelationClosure(String relationClosure) {
     this.relationClosure = relationClosure;
+    resolvedClosures.remove("relation_closure");
   }
   public void setEvidenceClosure(String evidenceClosure) {
     this.evidenceClosure = evidenceClosure;
+    resolvedClosures.remove("evidence_closure");
+  }
+  public void setPartitions(int partitions) {
+    this.partitions = partitions;
   }
 
   public Multimap<String, DirectedRelationshipType> getTypes() {
@@ -82,6 +107,11 @@ public class GolrCypherQuery {
     return types.asMap();
   }
 
+  @JsonIgnore
+  public ConcurrentMap<String, Set<DirectedRelationshipType>> getResolvedClosures() {
+    return resolvedClosures;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).
@@ -90,6 +120,7 @@ public class GolrCypherQuery {
             add("object_closure", objectClosure).
             add("relation_closure", relationClosure).
             add("evidence_closure", evidenceClosure).
+            add("partitions", partitions).
             add("types", types).
             toString();
   }
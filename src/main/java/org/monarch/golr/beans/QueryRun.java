@@ -0,0 +1,108 @@
+package org.monarch.golr.beans;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.google.common.base.MoreObjects;
+
+/***
+ * Row and document counts and wall time of one query (or query partition) run.
+ */
+public class QueryRun {
+
+  public enum Status {
+    PENDING, COMPLETE, FAILED
+  }
+
+  private String name;
+  private long rows;
+  private long docs;
+  private long millis;
+  private Status status;
+  @JsonInclude(Include.NON_NULL)
+  private String error;
+
+  public QueryRun() { }
+
+  public QueryRun(String name) {
+    this.name = name;
+  }
+
+  @JsonIgnore
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  public void setRows(long rows) {
+    this.rows = rows;
+  }
+
+  public long getDocs() {
+    return docs;
+  }
+
+  public void setDocs(long docs) {
+    this.docs = docs;
+  }
+
+  public void addDocs(long docs) {
+    this.docs += docs;
+  }
+
+  public long getMillis() {
+    return millis;
+  }
+
+  public void setMillis(long millis) {
+    this.millis = millis;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  @JsonIgnore
+  public double getRowsPerSecond() {
+    return perSecond(rows);
+  }
+
+  @JsonIgnore
+  public double getDocsPerSecond() {
+    return perSecond(docs);
+  }
+
+  private double perSecond(long count) {
+    return millis > 0 ? count * 1000.0 / millis : 0;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("name", name)
+        .add("rows", rows)
+        .add("docs", docs)
+        .add("millis", millis)
+        .add("status", status).toString();
+  }
+
+}
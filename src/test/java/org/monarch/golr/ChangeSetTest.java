@@ -0,0 +1,97 @@
+package org.monarch.golr;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import io.scigraph.frames.NodeProperties;
+import io.scigraph.neo4j.DirectedRelationshipType;
+
+public class ChangeSetTest extends GolrLoadSetup {
+
+  @Test
+  public void descendants_areAffected() {
+    ChangeSet changeSet =
+        ChangeSet.create(graphDb, graph, asList("http://x.org/a_a", "http://x.org/removed"));
+    assertThat(changeSet.isAffected(a.getId()), is(true));
+    assertThat(changeSet.isAffected(b.getId()), is(true));
+    assertThat(changeSet.isAffected(c.getId()), is(true));
+    assertThat(changeSet.isAffected(e.getId()), is(false));
+    assertThat(changeSet.affects(asList(e.getId(), c.getId())), is(true));
+  }
+
+  @Test
+  public void taxonMembers_areAffected() {
+    RelationshipType inTaxon = RelationshipType.withName("http://purl.obolibrary.org/obo/RO_0002162");
+    Node taxon = createNode("http://x.org/a_taxon");
+    Node gene = createNode("http://x.org/a_taxon_gene");
+    gene.createRelationshipTo(taxon, inTaxon);
+    ChangeSet changeSet = ChangeSet.create(graphDb, graph, asList("http://x.org/a_taxon"),
+        asList(new DirectedRelationshipType(inTaxon, Direction.OUTGOING)));
+    assertThat(changeSet.isAffected(gene.getId()), is(true));
+    assertThat(ChangeSet.create(graphDb, graph, asList("http://x.org/a_taxon"))
+        .isAffected(gene.getId()), is(false));
+  }
+
+  @Test
+  public void relationships_areAffectedByTheirEndsAndType() {
+    Node relation = createNode("http://x.org/a_relation");
+    Node start = createNode("http://x.org/a_relation_start");
+    Node end = createNode("http://x.org/a_relation_end");
+    Relationship relationship =
+        start.createRelationshipTo(end, RelationshipType.withName("http://x.org/a_relation"));
+    assertThat(ChangeSet.create(graphDb, graph, asList("http://x.org/a_relation"))
+        .affects(relationship), is(true));
+    assertThat(ChangeSet.create(graphDb, graph, asList("http://x.org/a_relation_end"))
+        .affects(relationship), is(true));
+    assertThat(ChangeSet.create(graphDb, graph, asList("http://x.org/a_a"))
+        .affects(relationship), is(false));
+  }
+
+  @Test
+  public void deleteQueries_matchSubjectsAndObjects() {
+    ChangeSet changeSet =
+        ChangeSet.create(graphDb, graph, Collections.singleton("http://x.org/a_a"));
+    assertThat(changeSet.getDeleteQueries(curieUtil),
+        contains("subject:(X\\:a) OR object:(X\\:a)"));
+  }
+
+  @Test
+  public void fingerprint_followsProperties() {
+    long fingerprint = ChangeSet.fingerprint(e);
+    e.setProperty("comment", "changed");
+    assertThat(ChangeSet.fingerprint(e), is(not(fingerprint)));
+    e.removeProperty("comment");
+    assertThat(ChangeSet.fingerprint(e), is(fingerprint));
+  }
+
+  @Test
+  public void diff_findsAddedAndRemovedNodes() {
+    GraphDatabaseService previous = new TestGraphDatabaseFactory().newImpermanentDatabase();
+    try {
+      try (Transaction tx = previous.beginTx()) {
+        previous.createNode().setProperty(NodeProperties.IRI, "http://x.org/removed");
+        tx.success();
+      }
+      assertThat(ChangeSet.diff(previous, graphDb),
+          hasItems("http://x.org/removed", "http://x.org/a_a"));
+    } finally {
+      previous.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,64 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.monarch.golr.beans.Checkpoint;
+
+public class CheckpointsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void checkpoint_waitsForEarlierBatches() throws Exception {
+    File file = new File(folder.getRoot(), "checkpoints.yaml");
+    Checkpoints checkpoints = Checkpoints.load(file);
+    Checkpoints.Tracker tracker = checkpoints.track("query");
+    Runnable first = tracker.queue(new Pair<>("s1", "o1"));
+    Runnable second = tracker.queue(new Pair<>("s2", "o2"));
+
+    second.run();
+    assertThat(checkpoints.get("query").isPresent(), is(false));
+    first.run();
+    Checkpoint checkpoint = Checkpoints.load(file).get("query").get();
+    assertThat(checkpoint.getSubject(), is("s2"));
+    assertThat(checkpoint.getObject(), is("o2"));
+    assertThat(checkpoint.isComplete(), is(false));
+  }
+
+  @Test
+  public void featureRows_areCheckpointed() throws Exception {
+    File file = new File(folder.getRoot(), "checkpoints.yaml");
+    Checkpoints checkpoints = Checkpoints.load(file);
+    Checkpoints.Tracker tracker = checkpoints.track("features");
+    tracker.queueRow("row1").run();
+    tracker.queueRow(null).run();
+    Checkpoint checkpoint = Checkpoints.load(file).get("features").get();
+    assertThat(checkpoint.getRow(), is("row1"));
+    assertThat(checkpoint.getSubject(), is(nullValue()));
+    assertThat(checkpoint.isComplete(), is(false));
+  }
+
+  @Test
+  public void finishedTask_isCompleteOnceAcknowledged() throws Exception {
+    File file = new File(folder.getRoot(), "checkpoints.yaml");
+    Checkpoints checkpoints = Checkpoints.load(file);
+    Checkpoints.Tracker tracker = checkpoints.track("query");
+    Runnable batch = tracker.queue(null);
+    tracker.finish();
+    assertThat(checkpoints.get("query").isPresent(), is(false));
+    batch.run();
+    assertThat(Checkpoints.load(file).get("query").get().isComplete(), is(true));
+
+    checkpoints.delete();
+    assertThat(file.exists(), is(false));
+  }
+
+}
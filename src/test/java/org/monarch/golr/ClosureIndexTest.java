@@ -0,0 +1,121 @@
+package org.monarch.golr;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+
+import io.scigraph.neo4j.DirectedRelationshipType;
+import io.scigraph.owlapi.OwlRelationships;
+
+public class ClosureIndexTest extends GolrLoadSetup {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  Path path;
+  ClosureIndex index;
+
+  @Before
+  public void setup() throws Exception {
+    path = folder.getRoot().toPath().resolve("closures.idx");
+    index = ClosureIndex.openOrBuild(path, graphDb, closureUtil);
+  }
+
+  Optional<TermClosure> getClosure(ClosureIndex index, long nodeId,
+      Collection<DirectedRelationshipType> types) {
+    return index.getClosure(nodeId, types, closureUtil.getTerms(), graphDb::getNodeById);
+  }
+
+  @Test
+  public void indexedClosures_matchTraversal() {
+    Optional<TermClosure> closure = getClosure(index, c.getId(), SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+    assertThat(closure.isPresent(), is(true));
+    TermClosure expected = closureUtil.computeClosure(c, SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+    assertThat(closure.get().getCurie(), is("X:c"));
+    assertThat(closure.get().getLabel(), is("C"));
+    // Both share the terms of the loader's dictionary
+    assertThat(closure.get().getTerms(), is(expected.getTerms()));
+    assertThat(closure.get().getLabels(), is(expected.getLabels()));
+  }
+
+  @Test
+  public void equalTypeSets_areServed() {
+    assertThat(getClosure(index, c.getId(), newHashSet(SolrDocUtil.DEFAULT_CLOSURE_TYPES))
+        .isPresent(), is(true));
+  }
+
+  @Test
+  public void nodesWithoutEquivalents_areNotIndexed() {
+    assertThat(getClosure(index, c.getId(), SolrDocUtil.EQUIVALENT_EDGES).isPresent(), is(false));
+  }
+
+  @Test
+  public void unindexedTypes_areNotServed() {
+    DirectedRelationshipType subclass =
+        new DirectedRelationshipType(OwlRelationships.RDFS_SUBCLASS_OF, Direction.OUTGOING);
+    assertThat(getClosure(index, c.getId(), newHashSet(subclass)).isPresent(), is(false));
+  }
+
+  @Test
+  public void closures_spanSegments() throws Exception {
+    // 16 byte segments split every closure
+    ClosureIndex segmented = ClosureIndex.open(path, 4);
+    for (Node node : graphDb.getAllNodes()) {
+      for (Collection<DirectedRelationshipType> types : ClosureIndex.INDEXED_TYPES) {
+        Optional<TermClosure> expected = getClosure(index, node.getId(), types);
+        Optional<TermClosure> closure = getClosure(segmented, node.getId(), types);
+        assertThat(closure.isPresent(), is(expected.isPresent()));
+        if (expected.isPresent()) {
+          assertThat(closure.get().getTerms(), is(expected.get().getTerms()));
+        }
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void truncatedIndexes_areRejected() throws Exception {
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 8));
+    ClosureIndex.open(path);
+  }
+
+  @Test
+  public void index_isReusedForSameGraph() throws Exception {
+    long modified = path.toFile().lastModified();
+    ClosureIndex reopened = ClosureIndex.openOrBuild(path, graphDb, closureUtil);
+    assertThat(reopened.getFingerprint(), is(index.getFingerprint()));
+    assertThat(path.toFile().lastModified(), is(modified));
+  }
+
+  @Test
+  public void index_isRebuiltForChangedGraph() throws Exception {
+    ClosureIndex.build(path, graphDb, closureUtil, 42L);
+    assertThat(ClosureIndex.open(path).getFingerprint(), is(42L));
+    ClosureIndex rebuilt = ClosureIndex.openOrBuild(path, graphDb, closureUtil);
+    assertThat(rebuilt.getFingerprint(), is(ClosureIndex.fingerprint(graphDb)));
+    assertThat(getClosure(rebuilt, a.getId(), SolrDocUtil.DEFAULT_CLOSURE_TYPES).get()
+        .getCuries(), contains("X:a"));
+  }
+
+  @Test
+  public void build_leavesNoTemporaryFiles() throws Exception {
+    ClosureIndex.build(path, graphDb, closureUtil, 42L);
+    assertThat(folder.getRoot().list(), is(new String[] {"closures.idx"}));
+  }
+
+}
@@ -0,0 +1,46 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.monarch.golr.beans.Closure;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ClosureMapTest {
+
+  static Closure closure(List<String> curies, List<String> labels) {
+    Closure closure = new Closure();
+    closure.getCuries().addAll(curies);
+    closure.getLabels().addAll(labels);
+    return closure;
+  }
+
+  @Test
+  public void json_matchesSerializedLinkedHashMap() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    ClosureMap closureMap = new ClosureMap();
+    Random random = new Random(42);
+    for (int size : new int[] {0, 1, 12, 13, 100, 1000}) {
+      List<Closure> closures = new ArrayList<>();
+      for (int c = 0; c < 3; c++) {
+        List<String> curies = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+          // Repeated curies across closures, and labels needing escapes
+          curies.add("X:" + random.nextInt(size + 1));
+          labels.add("label \"" + random.nextInt(10) + "\"\n\u00e9");
+        }
+        closures.add(closure(curies, labels));
+      }
+      assertThat(closureMap.toJson(closures),
+          is(mapper.writeValueAsString(ClosureUtil.collectClosureMap(closures))));
+    }
+  }
+
+}
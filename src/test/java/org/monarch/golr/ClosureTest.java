@@ -3,15 +3,28 @@ package org.monarch.golr;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import io.scigraph.frames.CommonProperties;
 import io.scigraph.neo4j.DirectedRelationshipType;
+import io.scigraph.owlapi.OwlLabels;
 import io.scigraph.owlapi.OwlRelationships;
 
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Test;
 import org.monarch.golr.beans.Closure;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.traversal.Evaluation;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.graphdb.traversal.Uniqueness;
+
+import com.google.common.collect.ImmutableSet;
 
 public class ClosureTest extends GolrLoadSetup {
 
@@ -48,4 +61,77 @@ public class ClosureTest extends GolrLoadSetup {
     assertThat(closure.getLabels(), contains("X:d", "C", "X:b", "A"));
   }
 
+  @Test
+  public void closures_areCachedPerRelationshipSet() {
+    DirectedRelationshipType type1 = new DirectedRelationshipType(OwlRelationships.RDFS_SUBCLASS_OF, Direction.OUTGOING);
+    DirectedRelationshipType type2 = new DirectedRelationshipType(OwlRelationships.RDF_TYPE, Direction.OUTGOING);
+    Closure closure = closureUtil.getClosure(d, newHashSet(type1));
+    assertThat(closureUtil.getClosure(d, newHashSet(type1)), is(sameInstance(closure)));
+    assertThat(closureUtil.getClosure(d, newHashSet(type1, type2)), is(not(sameInstance(closure))));
+    assertThat(closure.getCuries(), contains("X:d"));
+  }
+
+  @Test
+  public void closures_shareTermStrings() {
+    DirectedRelationshipType type = new DirectedRelationshipType(OwlRelationships.RDFS_SUBCLASS_OF, Direction.OUTGOING);
+    Closure closureOfC = closureUtil.getClosure(c, newHashSet(type));
+    Closure closureOfB = closureUtil.getClosure(b, newHashSet(type));
+    assertThat(closureOfC.getCuries().get(1), is(sameInstance(closureOfB.getCurie())));
+    assertThat(closureOfC.getLabels().get(2), is(sameInstance(closureOfB.getLabels().get(1))));
+  }
+
+  @Test
+  public void cycles_shareTheirAncestors() {
+    Node first = createNode("http://x.org/a_first");
+    Node second = createNode("http://x.org/a_second");
+    first.createRelationshipTo(second, OwlRelationships.RDFS_SUBCLASS_OF);
+    second.createRelationshipTo(first, OwlRelationships.RDFS_SUBCLASS_OF);
+    second.createRelationshipTo(c, OwlRelationships.RDFS_SUBCLASS_OF);
+    DirectedRelationshipType type = new DirectedRelationshipType(OwlRelationships.RDFS_SUBCLASS_OF, Direction.OUTGOING);
+    Closure closure = closureUtil.getClosure(first, newHashSet(type));
+    assertThat(closure.getCuries().get(0), is("X:first"));
+    assertThat(closure.getCuries(), containsInAnyOrder("X:first", "X:second", "X:c", "X:b", "X:a"));
+    closure = closureUtil.getClosure(second, newHashSet(type));
+    assertThat(closure.getCuries().get(0), is("X:second"));
+    assertThat(closure.getCuries(), containsInAnyOrder("X:first", "X:second", "X:c", "X:b", "X:a"));
+  }
+
+  @Test
+  public void evictedParents_stayInTheClosure() {
+    DirectedRelationshipType type1 = new DirectedRelationshipType(OwlRelationships.RDFS_SUBCLASS_OF, Direction.OUTGOING);
+    DirectedRelationshipType type2 = new DirectedRelationshipType(OwlRelationships.RDF_TYPE, Direction.OUTGOING);
+    // Ordered, so that the cached parent is seen before the uncached one evicts it
+    Set<DirectedRelationshipType> types = ImmutableSet.of(type1, type2);
+    ClosureUtil tiny = new ClosureUtil(graphDb, curieUtil, 1);
+    tiny.getClosure(b, types);
+    Node child = createNode("http://x.org/a_child");
+    Node parent = createNode("http://x.org/a_parent");
+    child.createRelationshipTo(b, OwlRelationships.RDFS_SUBCLASS_OF);
+    child.createRelationshipTo(parent, OwlRelationships.RDF_TYPE);
+    parent.createRelationshipTo(a, OwlRelationships.RDFS_SUBCLASS_OF);
+    Closure closure = tiny.getClosure(child, types);
+    assertThat(closure.getCuries(), containsInAnyOrder("X:child", "X:parent", "X:b", "X:a"));
+  }
+
+  @Test
+  public void closures_matchBreadthFirstTraversals() {
+    ClosureUtil uncached = new ClosureUtil(graphDb, curieUtil);
+    TraversalDescription description = graphDb.traversalDescription().breadthFirst()
+        .uniqueness(Uniqueness.NODE_GLOBAL)
+        .evaluator((Path path) -> path.endNode().hasLabel(OwlLabels.OWL_ANONYMOUS)
+            ? Evaluation.EXCLUDE_AND_PRUNE : Evaluation.INCLUDE_AND_CONTINUE);
+    for (DirectedRelationshipType type : SolrDocUtil.DEFAULT_CLOSURE_TYPES) {
+      description = description.relationships(type.getType(), type.getDirection());
+    }
+    for (Node node : graphDb.getAllNodes()) {
+      Set<String> expected = new HashSet<>();
+      for (Path path : description.traverse(node)) {
+        String iri = (String) path.endNode().getProperty(CommonProperties.IRI);
+        expected.add(curieUtil.getCurie(iri).orElse(iri));
+      }
+      Closure closure = uncached.getClosure(node, SolrDocUtil.DEFAULT_CLOSURE_TYPES);
+      assertThat(new HashSet<>(closure.getCuries()), is(expected));
+    }
+  }
+
 }
@@ -0,0 +1,114 @@
+package org.monarch.golr;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DocumentIdLogTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  static final List<String> TASKS = asList("query [1/2]", "query [2/2]");
+
+  static String id(int n) {
+    return DocumentIds.forRow("query", Collections.singletonMap("n", n));
+  }
+
+  DocumentIdLog log;
+  SolrIndexerTest.StubSolrClient client;
+  SolrIndexer indexer;
+
+  @Before
+  public void setup() throws Exception {
+    log = DocumentIdLog.open(new File(folder.getRoot(), "ids"));
+    client = new SolrIndexerTest.StubSolrClient(0);
+    indexer = new SolrIndexer(client, "stub", 1, 1, CommitPolicy.finalCommit(), 0, 0);
+  }
+
+  void record(String task, int... ns) throws Exception {
+    try (DocumentIdLog.Recorder recorder = log.record(task)) {
+      for (int n : ns) {
+        recorder.add(id(n));
+      }
+      recorder.commit();
+    }
+  }
+
+  @Test
+  public void idsNoLongerProduced_areDeleted() throws Exception {
+    record(TASKS.get(0), 1, 2);
+    record(TASKS.get(1), 3);
+    assertThat(log.deleteStale("query", TASKS, indexer), is(0L));
+    log.promote();
+
+    // Row 3 moved to the other partition, row 2 is gone
+    record(TASKS.get(0), 1, 3);
+    record(TASKS.get(1), 4);
+    assertThat(log.deleteStale("query", TASKS, indexer), is(1L));
+    assertThat(client.deletedIds, contains(id(2)));
+  }
+
+  @Test
+  public void queriesMissingTheIdsOfATask_deleteNothing() throws Exception {
+    record(TASKS.get(0), 1, 2);
+    record(TASKS.get(1), 3);
+    log.deleteStale("query", TASKS, indexer);
+    log.promote();
+
+    record(TASKS.get(0), 1);
+    assertThat(log.deleteStale("query", asList(TASKS.get(0), "query [1/3]"), indexer), is(0L));
+    assertThat(client.deletedIds, is(empty()));
+  }
+
+  @Test
+  public void uncommittedIds_keepThePreviousOnes() throws Exception {
+    record(TASKS.get(0), 1, 2);
+    record(TASKS.get(1), 3);
+    try (DocumentIdLog.Recorder recorder = log.record(TASKS.get(0))) {
+      recorder.add(id(1));
+    }
+    assertThat(log.deleteStale("query", TASKS, indexer), is(0L));
+    log.promote();
+
+    record(TASKS.get(0), 1, 2);
+    record(TASKS.get(1));
+    assertThat(log.deleteStale("query", TASKS, indexer), is(1L));
+    assertThat(client.deletedIds, contains(id(3)));
+  }
+
+  @Test
+  public void unpromotedIds_areComparedAgain() throws Exception {
+    record(TASKS.get(0), 1);
+    record(TASKS.get(1), 2);
+    log.deleteStale("query", TASKS, indexer);
+    log.promote();
+
+    // A load that is not committed leaves the ids of the last committed one in place
+    record(TASKS.get(1));
+    log.deleteStale("query", TASKS, indexer);
+    record(TASKS.get(1));
+    log = DocumentIdLog.open(new File(folder.getRoot(), "ids"));
+    log.deleteStale("query", TASKS, indexer);
+    assertThat(client.deletedIds, contains(id(2), id(2)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void otherIds_areRejected() throws Exception {
+    try (DocumentIdLog.Recorder recorder = log.record(TASKS.get(0))) {
+      recorder.add("abc");
+    }
+  }
+
+}
@@ -0,0 +1,35 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class DocumentIdsTest {
+
+  @Test
+  public void pairIds_dependOnQueryAndPair() {
+    String id = DocumentIds.forPair("q", new Pair<>("s", "o"));
+    assertThat(DocumentIds.forPair("q", new Pair<>("s", "o")), is(id));
+    assertThat(DocumentIds.forPair("other", new Pair<>("s", "o")), is(not(id)));
+    assertThat(DocumentIds.forPair("q", new Pair<>("o", "s")), is(not(id)));
+  }
+
+  @Test
+  public void rowIds_ignoreColumnOrder() {
+    Map<String, Object> row = new LinkedHashMap<>();
+    row.put("a", 1);
+    row.put("b", "x");
+    Map<String, Object> reordered = new LinkedHashMap<>();
+    reordered.put("b", "x");
+    reordered.put("a", 1);
+    assertThat(DocumentIds.forRow("q", reordered), is(DocumentIds.forRow("q", row)));
+    reordered.put("a", 2);
+    assertThat(DocumentIds.forRow("q", reordered), is(not(DocumentIds.forRow("q", row))));
+  }
+
+}
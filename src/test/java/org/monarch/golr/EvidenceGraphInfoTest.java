@@ -0,0 +1,32 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Relationship;
+
+import io.scigraph.owlapi.OwlRelationships;
+
+public class EvidenceGraphInfoTest extends GolrLoadSetup {
+
+  @Test
+  public void repeatedElements_areOnlyAddedOnce() {
+    Relationship rel = c.getSingleRelationship(OwlRelationships.RDFS_SUBCLASS_OF, Direction.OUTGOING);
+    Map<String, Object> row = new HashMap<>();
+    row.put("subject", c);
+    row.put("object", b);
+    row.put("relation", rel);
+    EvidenceGraphInfo info = new EvidenceGraphInfo();
+    info.addRow(row);
+    info.addRow(row);
+    assertThat(info.getNodeIds().size(), is(2));
+    assertThat(info.getRelationshipIds(), contains(rel.getId()));
+  }
+
+}
@@ -0,0 +1,59 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+public class GolrDocumentTest {
+
+  @Test
+  public void distinctValues_skipDuplicates() {
+    GolrDocument doc = new GolrDocument();
+    for (int i = 0; i < 100; i++) {
+      doc.addDistinct("closure", "X:" + (i % 40));
+    }
+    doc.addDistinct("closure", null);
+    doc.addDistinct("closure", null);
+    doc.addField("closure", Arrays.asList("X:0", "X:40"));
+
+    SolrInputDocument solrDoc = doc.toSolrInputDocument();
+    assertThat(solrDoc.getFieldValues("closure").size(), is(42));
+    assertThat(solrDoc.getFieldValue("closure"), is("X:0"));
+  }
+
+  @Test
+  public void addField_behavesLikeSolrInputDocument() {
+    GolrDocument doc = new GolrDocument();
+    doc.addField("single", "a");
+    doc.addField("multi", "a");
+    doc.addField("multi", Arrays.asList("b", "c"));
+    doc.addField("empty", Arrays.asList());
+
+    SolrInputDocument solrDoc = doc.toSolrInputDocument();
+    assertThat(solrDoc.getFieldValue("single"), is("a"));
+    assertThat(solrDoc.getField("multi").getValue(), instanceOf(ArrayList.class));
+    assertThat(solrDoc.getFieldValues("multi"), contains("a", "b", "c"));
+    assertThat(solrDoc.getFieldValues("empty").isEmpty(), is(true));
+    assertThat(doc.getFieldValue("multi"), is("a"));
+  }
+
+  @Test
+  public void addField_leavesTheCallersListAlone() {
+    ArrayList<Object> first = new ArrayList<>(Arrays.asList("a", "b"));
+    GolrDocument doc = new GolrDocument();
+    doc.addField("multi", first);
+    doc.addField("multi", Arrays.asList("b", "c"));
+    doc.addField("multi", "d");
+
+    assertThat(first, contains("a", "b"));
+    assertThat(doc.toSolrInputDocument().getFieldValues("multi"), contains("a", "b", "c", "d"));
+  }
+
+}
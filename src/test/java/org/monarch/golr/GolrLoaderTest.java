@@ -2,29 +2,44 @@ package org.monarch.golr;
 
 import io.scigraph.internal.CypherUtil;
 import io.scigraph.internal.GraphApi;
-import io.scigraph.internal.TinkerGraphUtil;
 import io.scigraph.neo4j.DirectedRelationshipType;
 
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.solr.common.SolrInputDocument;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.monarch.golr.beans.Checkpoint;
 import org.monarch.golr.beans.GolrCypherQuery;
+import org.monarch.golr.beans.QueryRun;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 
 public class GolrLoaderTest extends GolrLoadSetup {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   GolrLoader processor;
   StringWriter writer = new StringWriter();
 
@@ -34,7 +49,7 @@ public class GolrLoaderTest extends GolrLoadSetup {
     CypherUtil cypherUtil = new CypherUtil(graphDb, curieUtil);
     processor =
         new GolrLoader(graphDb, graph, new CypherUtil(graphDb, curieUtil), curieUtil, 
-            stub, new GraphApi(graphDb, cypherUtil, curieUtil));
+            stub, new GraphApi(graphDb, cypherUtil, curieUtil), closureUtil);
   }
 
   @Test
@@ -43,8 +58,8 @@ public class GolrLoaderTest extends GolrLoadSetup {
     
     List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
     results = TestUtils.getResultList(query);
-    TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-    SolrInputDocument solrDoc = processor.serializerRow(results.get(0), tguEvidenceGraph, new HashSet<>(), query);
+    SolrInputDocument solrDoc =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
     Writer writer = TestUtils.convertSolrToJson(solrDoc);
     
     JSONAssert.assertEquals(getFixture("fixtures/primitives.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
@@ -56,26 +71,39 @@ public class GolrLoaderTest extends GolrLoadSetup {
     
     List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
     results = TestUtils.getResultList(query);
-    TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-    SolrInputDocument solrDoc = processor.serializerRow(results.get(0), tguEvidenceGraph, new HashSet<>(), query);
+    SolrInputDocument solrDoc =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
     Writer writer = TestUtils.convertSolrToJson(solrDoc);
 
-    JSONAssert.assertEquals(getFixture("fixtures/simpleResult.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
+    JSONAssert.assertEquals(getFixture("fixtures/simpleResult.json"), writer.toString(), TestUtils.DOCUMENT_COMPARATOR);
     
     
   }
 
+  @Test
+  public void warmUp_doesNotChangeDocuments() throws Exception {
+    processor.warmUp(2);
+    GolrCypherQuery query = new GolrCypherQuery("MATCH (thing)-[:CAUSES]->(otherThing) RETURN *");
+
+    List<Map<String, Object>> results = TestUtils.getResultList(query);
+    SolrInputDocument solrDoc =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
+    Writer writer = TestUtils.convertSolrToJson(solrDoc);
+
+    JSONAssert.assertEquals(getFixture("fixtures/simpleResult.json"), writer.toString(), TestUtils.DOCUMENT_COMPARATOR);
+  }
+
   @Test
   public void relationshipClosureSerialization() throws Exception {
     GolrCypherQuery query = new GolrCypherQuery("MATCH ()-[relationship:CAUSES]->() RETURN *");
     
     List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
     results = TestUtils.getResultList(query);
-    TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-    SolrInputDocument solrDoc = processor.serializerRow(results.get(0), tguEvidenceGraph, new HashSet<>(), query);
+    SolrInputDocument solrDoc =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
     Writer writer = TestUtils.convertSolrToJson(solrDoc);
     
-    JSONAssert.assertEquals(getFixture("fixtures/relationshipResult.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
+    JSONAssert.assertEquals(getFixture("fixtures/relationshipResult.json"), writer.toString(), TestUtils.DOCUMENT_COMPARATOR);
   }
 
   @Test
@@ -85,11 +113,11 @@ public class GolrLoaderTest extends GolrLoadSetup {
     
     List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
     results = TestUtils.getResultList(query);
-    TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-    SolrInputDocument solrDoc = processor.serializerRow(results.get(0), tguEvidenceGraph, new HashSet<>(), query);
+    SolrInputDocument solrDoc =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
     Writer writer = TestUtils.convertSolrToJson(solrDoc);
     
-    JSONAssert.assertEquals(getFixture("fixtures/customClosureTypeResult.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
+    JSONAssert.assertEquals(getFixture("fixtures/customClosureTypeResult.json"), writer.toString(), TestUtils.DOCUMENT_COMPARATOR);
   }
 
   @Test
@@ -98,11 +126,109 @@ public class GolrLoaderTest extends GolrLoadSetup {
     query.setObjectClosure("subClassOf|http://purl.obolibrary.org/obo/BFO_0000050|equivalentClass|sameAs");
     List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
     results = TestUtils.getResultList(query);
-    TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
-    SolrInputDocument solrDoc = processor.serializerRow(results.get(0), tguEvidenceGraph, new HashSet<>(), query);
+    SolrInputDocument solrDoc =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
     Writer writer = TestUtils.convertSolrToJson(solrDoc);
     
-    JSONAssert.assertEquals(getFixture("fixtures/customClosureQuery.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
+    JSONAssert.assertEquals(getFixture("fixtures/customClosureQuery.json"), writer.toString(), TestUtils.DOCUMENT_COMPARATOR);
+  }
+
+  @Test
+  public void partitionedQuery_producesTheSameDocuments() throws Exception {
+    String cypher = "MATCH (subject)-[:subClassOf]->(object) %s"
+        + "RETURN subject, object, 'ontology' AS subject_category, 'ontology' AS object_category "
+        + "ORDER BY id(subject), id(object)";
+    GolrCypherQuery query = new GolrCypherQuery(String.format(cypher, ""));
+    GolrCypherQuery partitioned =
+        new GolrCypherQuery(String.format(cypher, "WHERE id(subject) % {partitions} = {partition} "));
+    partitioned.setPartitions(3);
+
+    SolrIndexerTest.StubSolrClient client = new SolrIndexerTest.StubSolrClient(0);
+    try (SolrIndexer indexer =
+        new SolrIndexer(client, "stub", 1, 1, CommitPolicy.finalCommit(), 0, 0)) {
+      // Named alike so that the same pair gets the same document id
+      processor.process(query, indexer, Optional.of("subclasses"));
+    }
+    SolrIndexerTest.StubSolrClient partitionedClient = new SolrIndexerTest.StubSolrClient(0);
+    try (SolrIndexer indexer =
+        new SolrIndexer(partitionedClient, "stub", 1, 1, CommitPolicy.finalCommit(), 0, 0)) {
+      processor.process(partitioned, indexer, Optional.of("subclasses"));
+    }
+    assertThat(client.added.get(), greaterThan(1));
+    // Every document comes from exactly one partition
+    assertThat(partitionedClient.ids, containsInAnyOrder(client.ids.toArray()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void partitionedQuery_withoutParameters_isRejected() throws Exception {
+    GolrCypherQuery partitioned = new GolrCypherQuery(
+        "MATCH (subject)-[:subClassOf]->(object) RETURN subject, object");
+    partitioned.setPartitions(3);
+    try (SolrIndexer indexer = new SolrIndexer(new SolrIndexerTest.StubSolrClient(0), "stub",
+        1, 1, CommitPolicy.finalCommit(), 0, 0)) {
+      processor.process(partitioned, indexer);
+    }
+  }
+
+  @Test
+  public void featureQuery_resumesAfterCheckpointedRow() throws Exception {
+    String cypher = "UNWIND range(1, 5) AS n RETURN n ORDER BY n";
+    GolrCypherQuery query = new GolrCypherQuery(cypher);
+    Map<String, Object> row = new HashMap<>();
+    row.put("n", 2L);
+    Checkpoints checkpoints = Checkpoints.disabled();
+    checkpoints.update("features", Checkpoint.atRow(DocumentIds.forRow(cypher, row)));
+    processor.setCheckpoints(checkpoints);
+
+    SolrIndexerTest.StubSolrClient client = new SolrIndexerTest.StubSolrClient(0);
+    try (SolrIndexer indexer =
+        new SolrIndexer(client, "stub", 1, 1, CommitPolicy.finalCommit(), 0, 0)) {
+      processor.process(query, indexer, Optional.empty(), 0, new QueryRun("features"));
+    }
+    List<Object> expected = new ArrayList<>();
+    for (long n = 3; n <= 5; n++) {
+      row.put("n", n);
+      expected.add(DocumentIds.forRow(cypher, row));
+    }
+    assertThat(client.ids, is(expected));
+    assertThat(checkpoints.get("features").get().isComplete(), is(true));
+  }
+
+  @Test
+  public void featureRowsNoLongerProduced_areDeletedById() throws Exception {
+    DocumentIdLog documentIds = DocumentIdLog.open(folder.newFolder());
+    processor.setDocumentIds(documentIds);
+    SolrIndexerTest.StubSolrClient client = new SolrIndexerTest.StubSolrClient(0);
+    Map<String, Object> row = new HashMap<>();
+    try (SolrIndexer indexer =
+        new SolrIndexer(client, "stub", 1, 1, CommitPolicy.finalCommit(), 0, 0)) {
+      GolrCypherQuery query = new GolrCypherQuery("UNWIND range(1, 5) AS n RETURN n ORDER BY n");
+      processor.process(query, indexer, Optional.of("features"));
+      documentIds.deleteStale("features", asList("features"), indexer);
+      documentIds.promote();
+
+      // Rows skipped from a checkpoint are still produced
+      row.put("n", 2L);
+      Checkpoints checkpoints = Checkpoints.disabled();
+      checkpoints.update("features", Checkpoint.atRow(DocumentIds.forRow("features", row)));
+      processor.setCheckpoints(checkpoints);
+      query = new GolrCypherQuery("UNWIND range(1, 4) AS n RETURN n ORDER BY n");
+      processor.process(query, indexer, Optional.of("features"));
+      documentIds.deleteStale("features", asList("features"), indexer);
+    }
+    row.put("n", 5L);
+    assertThat(client.deletedIds, contains(DocumentIds.forRow("features", row)));
+  }
+
+  @Test
+  public void closureTypes_areResolvedOncePerQuery() throws Exception {
+    GolrCypherQuery query = new GolrCypherQuery("RETURN 1");
+    query.setObjectClosure("subClassOf|equivalentClass");
+    Set<DirectedRelationshipType> types =
+        processor.getClosureTypes(query, "object_closure", query.getObjectClosure());
+    assertThat(processor.getClosureTypes(query, "object_closure", query.getObjectClosure()),
+        sameInstance(types));
+    assertThat(types.size(), is(2));
   }
 
 }
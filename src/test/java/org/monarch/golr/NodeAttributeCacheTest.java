@@ -0,0 +1,118 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class NodeAttributeCacheTest {
+
+  @Test
+  public void singleValues_areComputedOnce() {
+    NodeAttributeCache cache = new NodeAttributeCache("test", 10);
+    AtomicInteger loads = new AtomicInteger();
+    // Far more than the expected size, so the segments have to grow
+    for (int round = 0; round < 2; round++) {
+      for (long id = 0; id < 10_000; id++) {
+        long value = cache.get(id, nodeId -> {
+          loads.incrementAndGet();
+          return 0 == nodeId % 3 ? NodeAttributeCache.NONE : nodeId * 2;
+        });
+        assertThat(value, is(0 == id % 3 ? NodeAttributeCache.NONE : id * 2));
+      }
+    }
+    assertThat(loads.get(), is(10_000));
+    assertThat(cache.size(), is(10_000L));
+    assertThat(cache.getHitCount(), is(10_000L));
+    assertThat(cache.getMissCount(), is(10_000L));
+    assertThat(cache.getFootprint(), greaterThan(10_000L * 2 * Long.BYTES));
+  }
+
+  @Test
+  public void multipleValues_arePacked() {
+    NodeAttributeCache cache = new NodeAttributeCache("test", 10);
+    for (long id = 0; id < 1_000; id++) {
+      long[] values = new long[(int) (id % 4)];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = id + i;
+      }
+      cache.getAll(id, nodeId -> values);
+    }
+    for (long id = 0; id < 1_000; id++) {
+      long[] values = cache.getAll(id, nodeId -> {
+        throw new AssertionError("Not cached: " + nodeId);
+      });
+      assertThat(values.length, is((int) (id % 4)));
+      for (int i = 0; i < values.length; i++) {
+        assertThat(values[i], is(id + i));
+      }
+    }
+  }
+
+  @Test
+  public void racingLoads_returnTheStoredValue() throws Exception {
+    NodeAttributeCache cache = new NodeAttributeCache("test", 10);
+    CountDownLatch bothLoading = new CountDownLatch(2);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<Long> first = pool.submit(() -> cache.get(1, nodeId -> {
+        bothLoading.countDown();
+        await(bothLoading);
+        return 10;
+      }));
+      Future<Long> second = pool.submit(() -> cache.get(1, nodeId -> {
+        bothLoading.countDown();
+        await(bothLoading);
+        return 20;
+      }));
+      assertThat(first.get(), is(second.get()));
+      assertThat(cache.get(1, nodeId -> 30), is(first.get()));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void racingMultipleValues_returnTheStoredValues() throws Exception {
+    NodeAttributeCache cache = new NodeAttributeCache("test", 10);
+    CountDownLatch bothLoading = new CountDownLatch(2);
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<long[]> first = pool.submit(() -> cache.getAll(1, nodeId -> {
+        bothLoading.countDown();
+        await(bothLoading);
+        return new long[] {10};
+      }));
+      Future<long[]> second = pool.submit(() -> cache.getAll(1, nodeId -> {
+        bothLoading.countDown();
+        await(bothLoading);
+        return new long[] {20, 21};
+      }));
+      assertThat(first.get(), is(second.get()));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void oversizedValueLists_areRejected() {
+    NodeAttributeCache cache = new NodeAttributeCache("test", 10);
+    cache.getAll(1, nodeId -> new long[1 << 20]);
+  }
+
+  static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class NodeIdSetTest {
+
+  @Test
+  public void ids_beyondIntRange_areSet() {
+    NodeIdSet ids = new NodeIdSet();
+    ids.add(1L << 31);
+    ids.add(1L << 40);
+    ids.add(Long.MAX_VALUE);
+    assertThat(ids.contains(1L << 31), is(true));
+    assertThat(ids.contains(1L << 40), is(true));
+    assertThat(ids.contains(Long.MAX_VALUE), is(true));
+    assertThat(ids.contains((1L << 40) + 1), is(false));
+    assertThat(ids.contains(0), is(false));
+    assertThat(ids.size(), is(3L));
+  }
+
+  @Test
+  public void ids_matchASortedSet() {
+    NodeIdSet ids = new NodeIdSet();
+    TreeSet<Long> expected = new TreeSet<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      // Dense low ids, with duplicates, and sparse high ones
+      long id = 0 == i % 10 ? random.nextLong() & Long.MAX_VALUE : random.nextInt(200_000);
+      ids.add(id);
+      expected.add(id);
+    }
+    assertThat(ids.size(), is((long) expected.size()));
+    for (long id = 0; id < 200_000; id++) {
+      assertThat(ids.contains(id), is(expected.contains(id)));
+    }
+    long[] array = ids.toArray();
+    int i = 0;
+    for (long id : expected) {
+      assertThat(array[i++], is(id));
+    }
+    assertThat(i, is(array.length));
+  }
+
+}
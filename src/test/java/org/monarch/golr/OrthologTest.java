@@ -5,7 +5,6 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -20,7 +19,6 @@ import org.neo4j.graphdb.Transaction;
 
 import io.scigraph.internal.CypherUtil;
 import io.scigraph.internal.GraphApi;
-import io.scigraph.internal.TinkerGraphUtil;
 
 public class OrthologTest extends GolrLoadSetup {
 
@@ -33,7 +31,7 @@ public class OrthologTest extends GolrLoadSetup {
     CypherUtil cypherUtil = new CypherUtil(graphDb, curieUtil);
     processor =
         new GolrLoader(graphDb, graph, new CypherUtil(graphDb, curieUtil), curieUtil, 
-            stub, new GraphApi(graphDb, cypherUtil, curieUtil));
+            stub, new GraphApi(graphDb, cypherUtil, curieUtil), closureUtil);
   }
 
   @Test
@@ -41,11 +39,11 @@ public class OrthologTest extends GolrLoadSetup {
       ExecutionException {
     GolrCypherQuery query = new GolrCypherQuery("MATCH (n:gene) RETURN n as subject, n as object");
     SolrInputDocument existingResult = new SolrInputDocument();
-    TinkerGraphUtil tguEvidenceGraph = new TinkerGraphUtil(curieUtil);
     List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
 
     results = TestUtils.getResultList(query);
-    existingResult = processor.serializerRow(results.get(0), tguEvidenceGraph, new HashSet<>(), query);
+    existingResult =
+        processor.serializerRow(results.get(0), new EvidenceGraphInfo(), query).toSolrInputDocument();
 
     assertThat(existingResult.toString(),
         StringContains
@@ -0,0 +1,48 @@
+package org.monarch.golr;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.monarch.golr.beans.QueryRun;
+
+public class QueryStatsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  static QueryRun run(String name, long millis) {
+    QueryRun run = new QueryRun(name);
+    run.setRows(10);
+    run.setDocs(5);
+    run.setMillis(millis);
+    return run;
+  }
+
+  @Test
+  public void longestQueries_comeFirst() {
+    QueryStats stats = new QueryStats();
+    stats.record(run("short", 10));
+    stats.record(run("long", 1000));
+    assertThat(stats.longestFirst(asList("short", "long", "new", "newer"), name -> name),
+        contains("new", "newer", "long", "short"));
+  }
+
+  @Test
+  public void stats_roundTrip() throws Exception {
+    File file = new File(folder.getRoot(), "stats.yaml");
+    QueryStats stats = new QueryStats();
+    stats.record(run("gene-phenotype.yaml", 1000));
+    stats.save(file);
+    QueryStats loaded = QueryStats.load(file);
+    assertThat(loaded.getExpectedMillis("gene-phenotype.yaml"), is(1000L));
+    assertThat(loaded.getExpectedMillis("other.yaml"), is(Long.MAX_VALUE));
+  }
+
+}
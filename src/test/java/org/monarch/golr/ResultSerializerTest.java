@@ -76,7 +76,7 @@ public class ResultSerializerTest extends GolrLoadSetup {
   @Test
   public void serializeNode() throws Exception {
     serializer.serialize("node", b);
-    JSONAssert.assertEquals(getFixture("fixtures/node.json"), getActual(), JSONCompareMode.NON_EXTENSIBLE);
+    JSONAssert.assertEquals(getFixture("fixtures/node.json"), getActual(), TestUtils.DOCUMENT_COMPARATOR);
   }
 
   @Ignore
@@ -84,7 +84,7 @@ public class ResultSerializerTest extends GolrLoadSetup {
   public void serializeNodeWithDynamicType() throws Exception {
     a.createRelationshipTo(b, RelationshipType.withName("hasPart"));
     serializer.serialize("node", singleton(b), newHashSet(new DirectedRelationshipType("hasPart", "INCOMING")));
-    JSONAssert.assertEquals(getFixture("fixtures/node.json"), getActual(), JSONCompareMode.NON_EXTENSIBLE);
+    JSONAssert.assertEquals(getFixture("fixtures/node.json"), getActual(), TestUtils.DOCUMENT_COMPARATOR);
   }
 
 }
@@ -0,0 +1,49 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunManifestTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void resumedManifest_keepsCompletedQueries() throws Exception {
+    File file = new File(folder.getRoot(), "manifest.yaml");
+    RunManifest manifest = RunManifest.open(file, false);
+    manifest.pending("done.yaml");
+    manifest.pending("broken.yaml");
+    manifest.pending("unfinished.yaml");
+    manifest.complete(QueryStatsTest.run("done.yaml", 1000));
+    manifest.fail("broken.yaml", new IOException("boom"));
+
+    RunManifest resumed = RunManifest.open(file, true);
+    assertThat(resumed.isResumed(), is(true));
+    assertThat(resumed.isComplete("done.yaml"), is(true));
+    assertThat(resumed.isComplete("broken.yaml"), is(false));
+    assertThat(resumed.isComplete("unfinished.yaml"), is(false));
+    assertThat(resumed.getFailed(), contains("broken.yaml"));
+  }
+
+  @Test
+  public void newManifest_ignoresPreviousLoad() throws Exception {
+    File file = new File(folder.getRoot(), "manifest.yaml");
+    RunManifest.open(file, false).complete(QueryStatsTest.run("done.yaml", 1000));
+
+    RunManifest manifest = RunManifest.open(file, false);
+    assertThat(manifest.isResumed(), is(false));
+    assertThat(manifest.isComplete("done.yaml"), is(false));
+    assertThat(manifest.getFailed(), is(empty()));
+  }
+
+}
@@ -1,5 +1,8 @@
 package org.monarch.golr;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
 import io.scigraph.internal.CypherUtil;
 import io.scigraph.internal.GraphApi;
 import org.junit.Before;
@@ -30,4 +33,29 @@ public class SimpleLoaderTest extends SimpleLoadSetup {
         processor.generate(writer, eqCurieMap);
         JSONAssert.assertEquals(getFixture("fixtures/searchDoc.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
     }
+
+    @Test
+    public void testJSONDocument_parallelUnordered() throws Exception {
+        Writer writer = new StringWriter();
+        processor.generate(writer, eqCurieMap, 4, false);
+        JSONAssert.assertEquals(getFixture("fixtures/searchDoc.json"), writer.toString(), JSONCompareMode.NON_EXTENSIBLE);
+    }
+
+    @Test
+    public void testNdjsonDocuments() throws Exception {
+        Writer writer = new StringWriter();
+        processor.generate(writer, eqCurieMap, 1, true, true);
+        String array = "[" + String.join(",", writer.toString().trim().split("\n")) + "]";
+        JSONAssert.assertEquals(getFixture("fixtures/searchDoc.json"), array, JSONCompareMode.NON_EXTENSIBLE);
+    }
+
+    @Test
+    public void testIndexDocuments() throws Exception {
+        SolrIndexerTest.StubSolrClient client = new SolrIndexerTest.StubSolrClient(0);
+        try (SolrIndexer indexer = new SolrIndexer(client, "stub", 2, 1, CommitPolicy.finalCommit(), 0, 1)) {
+            assertThat(processor.index(indexer, eqCurieMap, 2), is(2L));
+        }
+        assertThat(client.added.get(), is(2));
+        assertThat(client.commits.get(), is(1));
+    }
 }
@@ -0,0 +1,260 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.params.UpdateParams;
+import org.apache.solr.common.util.NamedList;
+import org.junit.Test;
+
+public class SolrIndexerTest {
+
+  static class StubSolrClient extends SolrClient {
+
+    private static final long serialVersionUID = 1L;
+
+    final AtomicInteger failures;
+    final AtomicInteger added = new AtomicInteger();
+    final AtomicInteger largestBatch = new AtomicInteger();
+    final List<Object> ids = new CopyOnWriteArrayList<>();
+    final AtomicInteger commits = new AtomicInteger();
+    final AtomicInteger softCommits = new AtomicInteger();
+    final AtomicInteger optimizes = new AtomicInteger();
+    volatile int commitWithin;
+    final List<String> deleteQueries = new CopyOnWriteArrayList<>();
+    final List<String> deletedIds = new CopyOnWriteArrayList<>();
+
+    StubSolrClient(int failures) {
+      this.failures = new AtomicInteger(failures);
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request, String collection)
+        throws SolrServerException, IOException {
+      if (failures.getAndDecrement() > 0) {
+        throw new IOException("Connection reset");
+      }
+      UpdateRequest update = (UpdateRequest) request;
+      List<SolrInputDocument> docs = update.getDocuments();
+      if (null != docs) {
+        added.addAndGet(docs.size());
+        largestBatch.accumulateAndGet(docs.size(), Math::max);
+        for (SolrInputDocument doc : docs) {
+          ids.add(doc.getFieldValue("id"));
+        }
+        commitWithin = update.getCommitWithin();
+      }
+      if (null != update.getDeleteQuery()) {
+        deleteQueries.addAll(update.getDeleteQuery());
+      }
+      if (null != update.getDeleteById()) {
+        deletedIds.addAll(update.getDeleteById());
+      }
+      SolrParams params = update.getParams();
+      if (null == params) {
+        // a plain add
+      } else if (null != params.get(UpdateParams.OPTIMIZE)) {
+        optimizes.incrementAndGet();
+      } else if (params.getBool(UpdateParams.SOFT_COMMIT, false)) {
+        softCommits.incrementAndGet();
+      } else if (null != params.get(UpdateParams.COMMIT)) {
+        commits.incrementAndGet();
+      }
+      return new NamedList<>();
+    }
+
+    @Override
+    public void close() {}
+
+  }
+
+  static Collection<SolrInputDocument> batch(int size) {
+    Collection<SolrInputDocument> docs = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      SolrInputDocument doc = new SolrInputDocument();
+      doc.addField("id", i);
+      docs.add(doc);
+    }
+    return docs;
+  }
+
+  @Test
+  public void allBatches_areIndexed() throws Exception {
+    StubSolrClient client = new StubSolrClient(0);
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 3, 1,
+        CommitPolicy.finalCommit(), 0, 0)) {
+      for (int i = 0; i < 20; i++) {
+        indexer.index(batch(5));
+      }
+    }
+    assertThat(client.added.get(), is(100));
+    assertThat(client.commits.get(), is(1));
+    assertThat(client.softCommits.get(), is(0));
+    assertThat(client.commitWithin, is(-1));
+  }
+
+  @Test
+  public void commitWithin_isSentWithBatches() throws Exception {
+    StubSolrClient client = new StubSolrClient(0);
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1,
+        CommitPolicy.commitWithin(5000), 0, 0)) {
+      indexer.index(batch(5));
+    }
+    assertThat(client.commitWithin, is(5000));
+    assertThat(client.commits.get(), is(1));
+  }
+
+  @Test
+  public void softCommits_followDocumentCount() throws Exception {
+    StubSolrClient client = new StubSolrClient(0);
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1,
+        CommitPolicy.softCommitEvery(10, 0).withOptimize(true), 0, 0)) {
+      for (int i = 0; i < 6; i++) {
+        indexer.index(batch(5));
+      }
+    }
+    assertThat(client.softCommits.get(), is(3));
+    assertThat(client.commits.get(), is(1));
+    assertThat(client.optimizes.get(), is(1));
+  }
+
+  @Test
+  public void failedRequests_areRetried() throws Exception {
+    StubSolrClient client = new StubSolrClient(2);
+    SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1, CommitPolicy.finalCommit(), 3, 1);
+    indexer.index(batch(5));
+    indexer.close();
+    assertThat(client.added.get(), is(5));
+    assertThat(indexer.getIndexedCount(), is(5L));
+  }
+
+  @Test(expected = IOException.class)
+  public void exhaustedRetries_failTheIndexer() throws Exception {
+    SolrIndexer indexer = new SolrIndexer(new StubSolrClient(10), "stub", 1, 1,
+        CommitPolicy.finalCommit(), 2, 1);
+    indexer.index(batch(5));
+    indexer.close();
+  }
+
+  @Test
+  public void batches_areSentInRequestsOfTheBatchSize() throws Exception {
+    StubSolrClient client = new StubSolrClient(0);
+    AtomicInteger acknowledged = new AtomicInteger();
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1, 10,
+        CommitPolicy.commitWithin(5000), 0, 0)) {
+      for (int i = 0; i < 3; i++) {
+        SolrIndexer.Batch batch = indexer.openBatch();
+        for (SolrInputDocument doc : batch(21)) {
+          batch.add(doc);
+        }
+        batch.close(() -> acknowledged.incrementAndGet());
+      }
+      indexer.openBatch().close(() -> acknowledged.incrementAndGet());
+    }
+    assertThat(client.added.get(), is(63));
+    assertThat(client.largestBatch.get(), is(10));
+    assertThat(acknowledged.get(), is(4));
+    assertThat(client.commitWithin, is(5000));
+  }
+
+  @Test
+  public void batchRequests_areRetried() throws Exception {
+    StubSolrClient client = new StubSolrClient(2);
+    AtomicInteger acknowledged = new AtomicInteger();
+    SolrIndexer indexer =
+        new SolrIndexer(client, "stub", 1, 1, 10, CommitPolicy.finalCommit(), 3, 1);
+    SolrIndexer.Batch batch = indexer.openBatch();
+    for (SolrInputDocument doc : batch(20)) {
+      batch.add(doc);
+    }
+    batch.close(() -> acknowledged.incrementAndGet());
+    indexer.close();
+    assertThat(client.added.get(), is(20));
+    assertThat(acknowledged.get(), is(1));
+  }
+
+  @Test
+  public void exhaustedRetries_onlyFailTheOpenBatch() throws Exception {
+    StubSolrClient client = new StubSolrClient(3);
+    AtomicInteger acknowledged = new AtomicInteger();
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1, 10,
+        CommitPolicy.finalCommit(), 2, 1)) {
+      SolrIndexer.Batch batch = indexer.openBatch();
+      try {
+        for (SolrInputDocument doc : batch(10)) {
+          batch.add(doc);
+        }
+        // Only the thread building the batch is told once the request has given up
+        while (true) {
+          batch.add(new SolrInputDocument());
+          Thread.sleep(1);
+        }
+      } catch (IOException e) {
+        batch.abort();
+      }
+      batch = indexer.openBatch();
+      batch.add(new SolrInputDocument());
+      batch.close(() -> acknowledged.incrementAndGet());
+    }
+    // Closing did not throw, so the indexer carried on and committed
+    assertThat(acknowledged.get(), is(1));
+    assertThat(client.commits.get(), is(1));
+  }
+
+  @Test
+  public void abortedBatches_areNeverAcknowledged() throws Exception {
+    StubSolrClient client = new StubSolrClient(0);
+    AtomicInteger acknowledged = new AtomicInteger();
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1, 10,
+        CommitPolicy.finalCommit(), 0, 0)) {
+      SolrIndexer.Batch batch = indexer.openBatch();
+      for (SolrInputDocument doc : batch(11)) {
+        batch.add(doc);
+      }
+      batch.abort();
+      // The indexer carries on with the other batches
+      batch = indexer.openBatch();
+      batch.add(new SolrInputDocument());
+      batch.close(() -> acknowledged.incrementAndGet());
+    }
+    assertThat(client.added.get(), is(11));
+    assertThat(acknowledged.get(), is(1));
+    assertThat(client.commits.get(), is(1));
+  }
+
+  @Test
+  public void deleteByQuery_isSentImmediately() throws Exception {
+    StubSolrClient client = new StubSolrClient(0);
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1,
+        CommitPolicy.finalCommit(), 0, 0)) {
+      indexer.deleteByQuery("subject:X\\:a");
+      assertThat(client.deleteQueries, contains("subject:X\\:a"));
+    }
+  }
+
+  @Test
+  public void deleteById_isSentImmediately() throws Exception {
+    StubSolrClient client = new StubSolrClient(1);
+    try (SolrIndexer indexer = new SolrIndexer(client, "stub", 1, 1,
+        CommitPolicy.finalCommit(), 1, 1)) {
+      indexer.deleteById(Arrays.asList("a", "b"));
+      assertThat(client.deletedIds, contains("a", "b"));
+    }
+  }
+
+}
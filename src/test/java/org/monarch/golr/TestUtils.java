@@ -12,9 +12,15 @@ import java.util.Map.Entry;
 
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.SolrInputField;
+import org.json.JSONException;
 import org.monarch.golr.beans.GolrCypherQuery;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
+import org.skyscreamer.jsonassert.JSONCompare;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.skyscreamer.jsonassert.JSONCompareResult;
+import org.skyscreamer.jsonassert.comparator.DefaultComparator;
+import org.skyscreamer.jsonassert.comparator.JSONComparator;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -26,6 +32,27 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 
 public class TestUtils extends GolrLoadSetup {
+
+  /***
+   * Compares documents like {@link JSONCompareMode#NON_EXTENSIBLE}, and the JSON objects held as
+   * strings by closure map fields regardless of their entry order.
+   */
+  static final JSONComparator DOCUMENT_COMPARATOR =
+      new DefaultComparator(JSONCompareMode.NON_EXTENSIBLE) {
+        @Override
+        public void compareValues(String prefix, Object expected, Object actual,
+            JSONCompareResult result) throws JSONException {
+          if (prefix.endsWith("_closure_map") && expected instanceof String
+              && actual instanceof String) {
+            if (JSONCompare.compareJSON((String) expected, (String) actual,
+                JSONCompareMode.NON_EXTENSIBLE).failed()) {
+              result.fail(prefix, expected, actual);
+            }
+          } else {
+            super.compareValues(prefix, expected, actual, result);
+          }
+        }
+      };
   
   static List<Map<String, Object>> getResultList(GolrCypherQuery query) {
     List<Map<String, Object>> resultList = new ArrayList<Map<String, Object>>();
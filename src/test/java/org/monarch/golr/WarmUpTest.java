@@ -0,0 +1,118 @@
+package org.monarch.golr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import io.scigraph.internal.CypherUtil;
+import io.scigraph.internal.GraphApi;
+import io.scigraph.owlapi.OwlRelationships;
+
+public class WarmUpTest extends GolrLoadSetup {
+
+  static final Label GENE = Label.label("gene");
+  static final Label VARIANT = Label.label("sequence feature");
+  static final Label GENOTYPE = Label.label("genotype");
+
+  static Node human, mouse, chromosome, geneA, geneB, variantA, variantB, genotype;
+
+  GolrLoader warm;
+  GolrLoader cold;
+
+  static RelationshipType type(String curie) {
+    return RelationshipType.withName("http://purl.obolibrary.org/obo/" + curie);
+  }
+
+  @BeforeClass
+  public static void addFeatures() {
+    try (Transaction tx = graphDb.beginTx()) {
+      human = createNode("http://x.org/human");
+      mouse = createNode("http://x.org/mouse");
+      Node chromosomeClass = createNode("http://purl.obolibrary.org/obo/SO_0000340");
+      chromosome = createNode("http://x.org/chr1");
+      chromosome.createRelationshipTo(chromosomeClass, OwlRelationships.RDF_TYPE);
+
+      geneA = createNode("http://x.org/geneA");
+      geneA.addLabel(GENE);
+      geneA.createRelationshipTo(human, type("RO_0002162"));
+      geneB = createNode("http://x.org/geneB");
+      geneB.addLabel(GENE);
+      geneB.createRelationshipTo(mouse, type("RO_0002162"));
+
+      // Located on chr1 through its begin position
+      variantA = createNode("http://x.org/variantA");
+      variantA.addLabel(VARIANT);
+      variantA.createRelationshipTo(geneA, type("GENO_0000418"));
+      Node location = createNode("http://x.org/variantA_location");
+      Node begin = createNode("http://x.org/variantA_begin");
+      variantA.createRelationshipTo(location, RelationshipType.withName("location"));
+      location.createRelationshipTo(begin, RelationshipType.withName("begin"));
+      begin.createRelationshipTo(chromosome, RelationshipType.withName("reference"));
+
+      // Its own taxon is nearer than the one of its gene
+      variantB = createNode("http://x.org/variantB");
+      variantB.addLabel(VARIANT);
+      variantB.createRelationshipTo(geneB, type("GENO_0000418"));
+      variantB.createRelationshipTo(human, type("RO_0002162"));
+
+      genotype = createNode("http://x.org/genotype");
+      genotype.addLabel(GENOTYPE);
+      genotype.createRelationshipTo(variantA, type("BFO_0000051"));
+      genotype.createRelationshipTo(variantB, type("BFO_0000051"));
+      tx.success();
+    }
+  }
+
+  GolrLoader newLoader() {
+    EvidenceProcessorStub stub =
+        new EvidenceProcessorStub(graphDb, new EvidenceAspectStub(), closureUtil, curieUtil);
+    CypherUtil cypherUtil = new CypherUtil(graphDb, curieUtil);
+    return new GolrLoader(graphDb, graph, cypherUtil, curieUtil, stub,
+        new GraphApi(graphDb, cypherUtil, curieUtil), closureUtil);
+  }
+
+  @Before
+  public void setup() throws Exception {
+    warm = newLoader();
+    warm.warmUp(2);
+    cold = newLoader();
+  }
+
+  @Test
+  public void warmedLookups_matchColdLookups() {
+    Set<Node> features = new LinkedHashSet<>();
+    for (Label label : Arrays.asList(GENE, VARIANT, GENOTYPE)) {
+      graphDb.findNodes(label).forEachRemaining(features::add);
+    }
+    for (Node feature : features) {
+      assertThat(warm.getCachedTaxon(feature), is(cold.getTaxon(feature)));
+      if (!feature.hasLabel(GENE)) {
+        assertThat(warm.getCachedGene(feature), is(cold.getGene(feature)));
+      }
+      assertThat(warm.getCachedChromosome(feature), is(cold.getChromosome(feature)));
+    }
+  }
+
+  @Test
+  public void featureLookups_followTheFixture() {
+    assertThat(warm.getCachedTaxon(variantA), is(Optional.of(human)));
+    assertThat(warm.getCachedTaxon(variantB), is(Optional.of(human)));
+    assertThat(warm.getCachedGene(variantB), is(Optional.of(geneB)));
+    assertThat(warm.getCachedChromosome(variantA), is(Optional.of(chromosome)));
+    assertThat(warm.getCachedGene(genotype).isPresent(), is(true));
+    assertThat(warm.getCachedTaxon(genotype).isPresent(), is(true));
+  }
+
+}